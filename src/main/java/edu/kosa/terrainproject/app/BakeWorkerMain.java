@@ -0,0 +1,19 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.net.BakeWorker;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Usage: BakeWorkerMain [threads]
+// Started by BakeCoordinator, not meant to be run by hand. Standard output carries the protocol, so everything
+// printed, logging included, is sent to standard error instead.
+public class BakeWorkerMain {
+    public static void main(String[] args) throws IOException {
+        FileOutputStream protocol = new FileOutputStream(FileDescriptor.out);
+        System.setOut(System.err);
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        BakeWorker.serve(System.in, protocol, threads);
+    }
+}
@@ -0,0 +1,80 @@
+package edu.kosa.terrainproject.app;
+
+import java.util.Arrays;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+
+// Usage: Benchmarks <chunkSize|noise|detail|lattice> [seed] [size] [runs] [options...]
+// Runs one benchmark: size is its area or sample count and options are passed on, see each benchmark for both.
+// Exits with status 1 when the benchmark's check fails.
+public final class Benchmarks {
+    private Benchmarks() {
+    }
+
+    @FunctionalInterface
+    interface Timer {
+        // Nanoseconds taken by one case in the given run
+        long time(int run, int index);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: Benchmarks <chunkSize|noise|detail|lattice> [seed] [size] [runs] [options...]");
+            System.exit(1);
+        }
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 12345L;
+        String[] options = args.length > 4 ? Arrays.copyOfRange(args, 4, args.length) : new String[0];
+        boolean passed = switch (args[0]) {
+            case "chunkSize" -> ChunkSizeBenchmark.run(seed, size(args, 384), runs(args, 3), options);
+            case "noise" -> NoiseKernelBenchmark.run(seed, size(args, 2_000_000), runs(args, 5));
+            case "detail" -> DetailLevelBenchmark.run(seed, size(args, 32), runs(args, 5));
+            case "lattice" -> LatticeBenchmark.run(seed, size(args, 32), runs(args, 5));
+            default -> {
+                System.err.println("Unknown benchmark " + args[0] + ", expected chunkSize, noise, detail or lattice");
+                yield false;
+            }
+        };
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static int size(String[] args, int defaultSize) {
+        return args.length > 2 ? Integer.parseInt(args[2]) : defaultSize;
+    }
+
+    private static int runs(String[] args, int defaultRuns) {
+        int runs = args.length > 3 ? Integer.parseInt(args[3]) : defaultRuns;
+        if (runs < 1) {
+            throw new IllegalArgumentException("At least one run is needed, got " + runs);
+        }
+        return runs;
+    }
+
+    // Run -1 warms up the JIT and is not counted, the best of the other runs is kept
+    static <T> T best(int runs, IntFunction<T> run, BinaryOperator<T> better) {
+        run.apply(-1);
+        T best = null;
+        for (int i = 0; i < runs; i++) {
+            T result = run.apply(i);
+            best = best == null ? result : better.apply(best, result);
+        }
+        return best;
+    }
+
+    // Shortest time of each case, every run times all cases in turn so they see the same machine state
+    static long[] bestTimes(int runs, int cases, Timer timer) {
+        return best(runs, run -> {
+            long[] times = new long[cases];
+            for (int i = 0; i < cases; i++) {
+                times[i] = timer.time(run, i);
+            }
+            return times;
+        }, (a, b) -> {
+            for (int i = 0; i < cases; i++) {
+                a[i] = Math.min(a[i], b[i]);
+            }
+            return a;
+        });
+    }
+}
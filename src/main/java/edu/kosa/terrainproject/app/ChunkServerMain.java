@@ -0,0 +1,17 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.net.ChunkProtocol;
+import edu.kosa.terrainproject.net.ChunkServer;
+
+import java.io.IOException;
+
+// Usage: ChunkServerMain [port] [threads]
+public class ChunkServerMain {
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : ChunkProtocol.DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        ChunkServer server = new ChunkServer(port, threads);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.serve();
+    }
+}
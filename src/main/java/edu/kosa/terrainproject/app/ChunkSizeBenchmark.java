@@ -0,0 +1,132 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.graphics.Camera;
+import edu.kosa.terrainproject.graphics.OcclusionCuller;
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.World;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Benchmarks chunkSize [seed] [areaBlocks] [runs] [sizes...]
+// Streams the same square of terrain with each chunk width and reports generation and meshing throughput, the
+// mesh bytes and draw calls the renderer would see, and the per-frame culling cost. areaBlocks must be a multiple
+// of every size. GPU frame time depends on the driver, compare it in the viewer with the Chunk size setting.
+public class ChunkSizeBenchmark {
+    static boolean run(long seed, int area, int runs, String[] options) {
+        int[] sizes = options.length > 0
+                ? Arrays.stream(options).mapToInt(Integer::parseInt).toArray()
+                : new int[]{16, 32, 64};
+        for (int size : sizes) {
+            if (area % size != 0) {
+                System.err.println("Area " + area + " is not a multiple of chunk size " + size);
+                return false;
+            }
+        }
+
+        System.out.printf("%-6s %8s %12s %12s %12s %10s %8s %10s %12s %12s%n", "size", "chunks", "gen col/s", "mesh col/s",
+                "packed col/s", "mesh MB", "draws", "cull us", "lookups/us", "checksum");
+        for (int size : sizes) {
+            // The warm up run streams other terrain over half the area
+            Result best = Benchmarks.best(runs,
+                    run -> run < 0 ? run(seed + 1, size, area / 2, 1) : run(seed, size, area, 200), Result::faster);
+            System.out.printf("%-6d %8d %12.0f %12.0f %12.0f %10.1f %8d %10.1f %12.1f %12d%n", size, best.chunks,
+                    best.generatedColumnsPerSecond, best.meshedColumnsPerSecond, best.packedColumnsPerSecond,
+                    best.meshBytes / 1048576.0, best.drawCalls, best.cullMicros, best.lookupsPerMicro, best.checksum);
+        }
+        return true;
+    }
+
+    private static final class Result {
+        int chunks;
+        double generatedColumnsPerSecond;
+        double meshedColumnsPerSecond;
+        double packedColumnsPerSecond;
+        long meshBytes;
+        int drawCalls;
+        double cullMicros;
+        double lookupsPerMicro;
+        long checksum; // Sum of the looked up blocks, printed so the lookups cannot be optimized away
+
+        // Best of each measurement. Terrain, camera path and culler are deterministic, so chunks, mesh bytes, draw
+        // calls and the checksum are identical between runs and the first run's are kept.
+        Result faster(Result other) {
+            generatedColumnsPerSecond = Math.max(generatedColumnsPerSecond, other.generatedColumnsPerSecond);
+            meshedColumnsPerSecond = Math.max(meshedColumnsPerSecond, other.meshedColumnsPerSecond);
+            packedColumnsPerSecond = Math.max(packedColumnsPerSecond, other.packedColumnsPerSecond);
+            cullMicros = Math.min(cullMicros, other.cullMicros);
+            lookupsPerMicro = Math.max(lookupsPerMicro, other.lookupsPerMicro);
+            return this;
+        }
+    }
+
+    private static Result run(long seed, int size, int area, int frames) {
+        TerrainConfig config = new TerrainConfig(seed);
+        config.chunkSize = size;
+        World world = new World(config);
+        int radius = area / size / 2;
+        Result result = new Result();
+
+        // The ring around the area is generated too, border faces look into it
+        long start = System.nanoTime();
+        for (int x = -radius - 1; x < radius + 1; x++) {
+            for (int z = -radius - 1; z < radius + 1; z++) {
+                world.getChunk(x, z);
+            }
+        }
+        long columns = (long) (2 * radius + 2) * (2 * radius + 2) * size * size;
+        result.generatedColumnsPerSecond = columns / ((System.nanoTime() - start) / 1e9);
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (int x = -radius; x < radius; x++) {
+            for (int z = -radius; z < radius; z++) {
+                chunks.add(world.getChunk(x, z));
+            }
+        }
+        result.chunks = chunks.size();
+        long areaColumns = (long) area * area;
+
+        start = System.nanoTime();
+        for (Chunk chunk : chunks) {
+            chunk.generateMesh(world);
+        }
+        result.meshedColumnsPerSecond = areaColumns / ((System.nanoTime() - start) / 1e9);
+        start = System.nanoTime();
+        for (Chunk chunk : chunks) {
+            chunk.generateFaceMesh(world);
+        }
+        result.packedColumnsPerSecond = areaColumns / ((System.nanoTime() - start) / 1e9);
+        for (Chunk chunk : chunks) {
+            result.meshBytes += chunk.getMeshByteSize();
+        }
+
+        // A camera turning in place over the centre, as the update thread would cull it every tick
+        Camera camera = new Camera(4f / 3f);
+        OcclusionCuller culler = new OcclusionCuller(128, 96);
+        int draws = 0;
+        start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            camera.rotate(3600f / frames);
+            Matrix4f viewProjection = new Matrix4f(camera.getProjectionMatrix()).mul(camera.getViewMatrix());
+            draws += culler.cull(chunks, viewProjection, true).size();
+        }
+        result.cullMicros = (System.nanoTime() - start) / 1e3 / frames;
+        result.drawCalls = draws / frames;
+
+        Random random = new Random(seed);
+        int lookups = 2_000_000;
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            checksum += world.getBlock(random.nextInt(area) - area / 2, random.nextInt(64), random.nextInt(area) - area / 2);
+        }
+        result.lookupsPerMicro = lookups / ((System.nanoTime() - start) / 1e3);
+        result.checksum = checksum;
+        world.cleanup();
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
+import edu.kosa.terrainproject.terrain.HeightFunction;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+
+// Benchmarks detail [seed] [areaChunks] [runs]
+// Compares the column heights of every coarse detail level with full detail for each noise type: the largest
+// difference against HeightFunction.heightErrorBound() and how many columns moved at all, then the time to compute
+// the heights of the area at each level. Exits with status 1 when any column exceeds the bound of its level.
+public class DetailLevelBenchmark {
+    private static final int CHUNK = 16;
+
+    static boolean run(long seed, int area, int runs) {
+        long columns = (long) area * area * CHUNK * CHUNK;
+        boolean failed = false;
+
+        for (String noiseType : new String[]{"Standard", "Ridged", "Billowy", "Hybrid"}) {
+            TerrainConfig config = new TerrainConfig(seed);
+            config.noiseType = noiseType;
+            HeightFunction heightFunction = HeightFunction.compile(config.snapshot());
+            int[] exact = new int[CHUNK * CHUNK];
+            int[] coarse = new int[CHUNK * CHUNK];
+            for (int level = 1; level <= heightFunction.getMaxDetailLevel(); level++) {
+                int bound = heightFunction.heightErrorBound(level);
+                int maxDifference = 0;
+                long changed = 0;
+                long overBound = 0;
+                for (int cx = -area / 2; cx < area / 2; cx++) {
+                    for (int cz = -area / 2; cz < area / 2; cz++) {
+                        NoiseGrid grid = heightFunction.getGraph().newGrid(cx * CHUNK, cz * CHUNK, CHUNK, CHUNK);
+                        heightFunction.heights(grid, exact, 0);
+                        heightFunction.heights(grid, coarse, level);
+                        for (int i = 0; i < exact.length; i++) {
+                            int difference = Math.abs(exact[i] - coarse[i]);
+                            maxDifference = Math.max(maxDifference, difference);
+                            if (difference != 0) {
+                                changed++;
+                            }
+                            if (difference > bound) {
+                                overBound++;
+                            }
+                        }
+                    }
+                }
+                System.out.printf("%-8s level %d: bound %d blocks, max difference %d, %.2f%% of columns moved, %d over the bound%n",
+                        noiseType, level, bound, maxDifference, 100.0 * changed / columns, overBound);
+                if (overBound > 0) {
+                    failed = true;
+                }
+            }
+            if (heightFunction.getMaxDetailLevel() == 0) {
+                System.out.printf("%-8s has no coarse levels%n", noiseType);
+            }
+        }
+
+        // Coarse levels only pay off with many octaves to drop, World.getDetailLevel() uses them from MIN_COARSE_OCTAVES
+        for (int octaves : new int[]{3, HeightFunction.MIN_COARSE_OCTAVES, 8}) {
+            TerrainConfig config = new TerrainConfig(seed);
+            config.octaves = octaves;
+            HeightFunction heightFunction = HeightFunction.compile(config.snapshot());
+            long[] best = Benchmarks.bestTimes(runs, heightFunction.getMaxDetailLevel() + 1,
+                    (run, level) -> time(heightFunction, area, run, level));
+            StringBuilder line = new StringBuilder(String.format("%d octaves, %d chunk heights:", octaves, area * area));
+            for (int level = 0; level < best.length; level++) {
+                line.append(String.format(" level %d %.1f ms (%.2fx)", level, best[level] / 1e6, (double) best[0] / best[level]));
+            }
+            System.out.println(line);
+        }
+        if (failed) {
+            System.err.println("Coarse detail levels exceed their height error bound");
+        }
+        return !failed;
+    }
+
+    private static long time(HeightFunction heightFunction, int area, int run, int level) {
+        int[] heights = new int[CHUNK * CHUNK];
+        int originX = (run + 2) * area * CHUNK * 2; // Fresh terrain every run
+        long start = System.nanoTime();
+        for (int cx = 0; cx < area; cx++) {
+            for (int cz = 0; cz < area; cz++) {
+                heightFunction.heights(heightFunction.getGraph().newGrid(originX + cx * CHUNK, cz * CHUNK, CHUNK, CHUNK),
+                        heights, level);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
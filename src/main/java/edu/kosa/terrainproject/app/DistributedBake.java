@@ -0,0 +1,36 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.net.BakeCoordinator;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Usage: DistributedBake <seed> <originX> <originZ> <width> <depth> <outputPrefix> [workers] [threadsPerWorker] [jvmOptions...]
+// Same output as HeightmapExport, baked by worker JVMs started from this one's classpath
+public class DistributedBake {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedBake.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: DistributedBake <seed> <originX> <originZ> <width> <depth> <outputPrefix> [workers] [threadsPerWorker] [jvmOptions...]");
+            System.exit(1);
+        }
+        TerrainConfig config = new TerrainConfig(Long.parseLong(args[0]));
+        int originX = Integer.parseInt(args[1]);
+        int originZ = Integer.parseInt(args[2]);
+        int width = Integer.parseInt(args[3]);
+        int depth = Integer.parseInt(args[4]);
+        int processors = Runtime.getRuntime().availableProcessors();
+        int workers = args.length > 6 ? Integer.parseInt(args[6]) : Math.max(1, processors / 4);
+        int threads = args.length > 7 ? Integer.parseInt(args[7]) : Math.max(1, processors / workers);
+        BakeCoordinator coordinator = new BakeCoordinator(workers, threads,
+                args.length > 8 ? Arrays.asList(args).subList(8, args.length) : List.of());
+        coordinator.bake(config.snapshot(), originX, originZ, width, depth, Path.of(args[5] + ".r16"), Path.of(args[5] + ".water"));
+        LOGGER.info("Wrote {}.r16 and {}.water", args[5], args[5]);
+    }
+}
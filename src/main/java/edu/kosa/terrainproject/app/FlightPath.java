@@ -0,0 +1,88 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.graphics.Camera;
+import edu.kosa.terrainproject.net.ChunkProtocol;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// A flight written by FlightRecorder. A replay moves the camera to one sample per update tick, the same way it was
+// recorded, so every replay visits exactly the same poses in the same order. On a machine that cannot hold the tick
+// rate the flight takes longer instead of skipping parts of the path.
+public class FlightPath {
+    private final TerrainConfig config;
+    private final int renderDistance;
+    private final float[] times;
+    private final float[] poses; // x, y, z, yaw per sample
+
+    private FlightPath(TerrainConfig config, int renderDistance, float[] times, float[] poses) {
+        this.config = config;
+        this.renderDistance = renderDistance;
+        this.times = times;
+        this.poses = poses;
+    }
+
+    public static FlightPath read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FlightRecorder.MAGIC || in.readByte() != ChunkProtocol.CONFIG) {
+                throw new IOException(path + " is not a flight recording");
+            }
+            TerrainConfig config = ChunkProtocol.readConfig(in);
+            int renderDistance = in.readInt();
+            float[] times = new float[1024];
+            float[] poses = new float[4096];
+            int count = 0;
+            while (true) {
+                float time;
+                try {
+                    time = in.readFloat();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (count == times.length) {
+                    times = Arrays.copyOf(times, count * 2);
+                    poses = Arrays.copyOf(poses, count * 8);
+                }
+                times[count] = time;
+                for (int i = 0; i < 4; i++) {
+                    poses[count * 4 + i] = in.readFloat(); // A truncated sample throws, the file is damaged
+                }
+                count++;
+            }
+            if (count == 0) {
+                throw new IOException(path + " contains no camera samples");
+            }
+            return new FlightPath(config, renderDistance, Arrays.copyOf(times, count), Arrays.copyOf(poses, count * 4));
+        }
+    }
+
+    // Moves the camera to the pose recorded on the given tick, the last pose once the flight is over
+    public void apply(int tick, Camera camera) {
+        int sample = Math.min(tick, times.length - 1) * 4;
+        camera.getPosition().set(poses[sample], poses[sample + 1], poses[sample + 2]);
+        camera.setYaw(poses[sample + 3]);
+    }
+
+    // Seconds the recorded flight took
+    public float getDuration() {
+        return times[times.length - 1];
+    }
+
+    public int getSampleCount() {
+        return times.length;
+    }
+
+    public TerrainConfig getConfig() {
+        return config;
+    }
+
+    public int getRenderDistance() {
+        return renderDistance;
+    }
+}
@@ -0,0 +1,63 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.graphics.Camera;
+import edu.kosa.terrainproject.net.ChunkProtocol;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes the camera pose of every update tick to a file that FlightPath replays. The file starts with the terrain
+// configuration and render distance the flight began with, followed by (seconds, x, y, z, yaw) samples until the end.
+// Update thread only. A write error stops the recording, the session carries on without it.
+public class FlightRecorder implements AutoCloseable {
+    static final int MAGIC = 0x464C5431; // "FLT1"
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecorder.class);
+    private final Path path;
+    private DataOutputStream out;
+    private int samples;
+
+    public FlightRecorder(Path path, TerrainSnapshot config, int renderDistance) throws IOException {
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        out.writeInt(MAGIC);
+        ChunkProtocol.writeConfig(out, config);
+        out.writeInt(renderDistance);
+    }
+
+    public void record(float seconds, Camera camera) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeFloat(seconds);
+            out.writeFloat(camera.getPosition().x);
+            out.writeFloat(camera.getPosition().y);
+            out.writeFloat(camera.getPosition().z);
+            out.writeFloat(camera.getYaw());
+            samples++;
+        } catch (IOException e) {
+            LOGGER.error("Recording to {} failed, stopping it", path, e);
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+            LOGGER.info("Recorded {} camera samples to {}", samples, path);
+        } catch (IOException e) {
+            LOGGER.error("Could not finish recording {}", path, e);
+        }
+        out = null;
+    }
+}
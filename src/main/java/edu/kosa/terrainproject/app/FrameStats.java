@@ -0,0 +1,63 @@
+package edu.kosa.terrainproject.app;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Frame times and peak memory of a replay, for comparing builds. A hitch is a frame longer than twice the median,
+// a severe hitch one longer than 100 ms. Peak heap is the largest heap use seen at the end of a frame, allocation
+// that is collected again within one frame does not show up. Render thread only.
+public class FrameStats {
+    private static final float HITCH_FACTOR = 2f;
+    private static final float SEVERE_HITCH_SECONDS = 0.1f;
+    private float[] frames = new float[4096];
+    private int count;
+    private long peakMeshBytes;
+    private long peakHeapBytes;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public void addFrame(float seconds, long residentMeshBytes) {
+        if (count == frames.length) {
+            frames = Arrays.copyOf(frames, count * 2);
+        }
+        frames[count++] = seconds;
+        peakMeshBytes = Math.max(peakMeshBytes, residentMeshBytes);
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    public String report(int chunksCreated) {
+        float[] sorted = Arrays.copyOf(frames, count);
+        Arrays.sort(sorted);
+        double total = 0;
+        for (float frame : sorted) {
+            total += frame;
+        }
+        float median = percentile(sorted, 50);
+        int hitches = 0;
+        int severe = 0;
+        for (float frame : sorted) {
+            if (frame > median * HITCH_FACTOR) {
+                hitches++;
+            }
+            if (frame > SEVERE_HITCH_SECONDS) {
+                severe++;
+            }
+        }
+        return String.format(Locale.ROOT,
+                "frames=%d seconds=%.2f avg_ms=%.2f p50_ms=%.2f p90_ms=%.2f p99_ms=%.2f p999_ms=%.2f max_ms=%.2f "
+                        + "hitches=%d severe_hitches=%d chunks=%d peak_heap_mb=%.1f peak_mesh_mb=%.1f",
+                count, total, count > 0 ? total / count * 1000 : 0, median * 1000, percentile(sorted, 90) * 1000,
+                percentile(sorted, 99) * 1000, percentile(sorted, 99.9) * 1000, count > 0 ? sorted[count - 1] * 1000 : 0,
+                hitches, severe, chunksCreated, peakHeapBytes / 1048576.0, peakMeshBytes / 1048576.0);
+    }
+
+    // Nearest rank
+    private static float percentile(float[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
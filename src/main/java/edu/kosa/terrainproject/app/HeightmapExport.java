@@ -0,0 +1,36 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.terrain.HeightmapBaker;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Usage: HeightmapExport <seed> <originX> <originZ> <width> <depth> <outputPrefix> [threads]
+public class HeightmapExport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeightmapExport.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: HeightmapExport <seed> <originX> <originZ> <width> <depth> <outputPrefix> [threads]");
+            System.exit(1);
+        }
+        TerrainConfig config = new TerrainConfig(Long.parseLong(args[0]));
+        int originX = Integer.parseInt(args[1]);
+        int originZ = Integer.parseInt(args[2]);
+        int width = Integer.parseInt(args[3]);
+        int depth = Integer.parseInt(args[4]);
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+
+        HeightmapBaker baker = new HeightmapBaker(new World(config), threads);
+        try {
+            baker.bake(originX, originZ, width, depth, Path.of(args[5] + ".r16"), Path.of(args[5] + ".water"));
+        } finally {
+            baker.shutdown();
+        }
+        LOGGER.info("Wrote {}.r16 and {}.water", args[5], args[5]);
+    }
+}
@@ -0,0 +1,147 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.noise.graph.LatticeNode;
+import edu.kosa.terrainproject.noise.graph.NoiseGraph;
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
+import edu.kosa.terrainproject.noise.graph.NoiseNode;
+import edu.kosa.terrainproject.terrain.HeightFunction;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+
+// Benchmarks lattice [seed] [areaChunks] [runs]
+// Checks the coarse lattice interpolation of low-frequency layers against exact evaluation: the region and lake layer
+// error at several spacings and the column heights the interpolated region layer moves for every noise type. Then
+// times chunk heights and single column heights with and without the lattice. Exits with status 1 when the region
+// error at HeightFunction.REGION_SPACING exceeds MAX_REGION_ERROR or a column height moves by more than
+// MAX_HEIGHT_DIFFERENCE.
+public class LatticeBenchmark {
+    private static final double MAX_REGION_ERROR = 0.03;
+    private static final int MAX_HEIGHT_DIFFERENCE = 1; // Blocks, as the HeightFunction comment promises
+    private static final int[] SPACINGS = {2, 4, 8};
+    private static final int CHUNK = 16;
+
+    static boolean run(long seed, int area, int runs) {
+        TerrainSnapshot config = new TerrainConfig(seed).snapshot();
+        boolean failed = false;
+
+        // The layers of the exact height function, wrapped in a lattice per spacing
+        HeightFunction reference = HeightFunction.compileExact(config);
+        NoiseGraph graph = reference.getGraph();
+        NoiseNode region = reference.getRegionNoise();
+        NoiseNode water = reference.getLakeNoise();
+        if (!(HeightFunction.compile(config).getRegionNoise() instanceof LatticeNode drawn)
+                || drawn.getSpacing() != HeightFunction.REGION_SPACING) {
+            System.err.println("The compiled region layer is not a lattice of spacing " + HeightFunction.REGION_SPACING);
+            failed = true;
+        }
+        for (int spacing : SPACINGS) {
+            LatticeNode coarseRegion = graph.lattice(region, spacing);
+            LatticeNode coarseWater = graph.lattice(water, spacing);
+            double regionError = 0;
+            double waterError = 0;
+            long shoreColumns = 0;
+            for (int cx = -area / 2; cx < area / 2; cx++) {
+                for (int cz = -area / 2; cz < area / 2; cz++) {
+                    NoiseGrid grid = graph.newGrid(cx * CHUNK, cz * CHUNK, CHUNK, CHUNK);
+                    double[] exactRegion = grid.get(region);
+                    double[] latticeRegion = grid.get(coarseRegion);
+                    double[] exactWater = grid.get(water);
+                    double[] latticeWater = grid.get(coarseWater);
+                    for (int i = 0; i < exactRegion.length; i++) {
+                        regionError = Math.max(regionError, Math.abs(exactRegion[i] - latticeRegion[i]));
+                        waterError = Math.max(waterError, Math.abs(exactWater[i] - latticeWater[i]));
+                        if ((exactWater[i] > HeightFunction.WATER_THRESHOLD) != (latticeWater[i] > HeightFunction.WATER_THRESHOLD)) {
+                            shoreColumns++;
+                        }
+                    }
+                }
+            }
+            long columns = (long) area * area * CHUNK * CHUNK;
+            System.out.printf("spacing %d: region error %.4f, lake error %.4f (%.2f%% of columns change lake/land)%n",
+                    spacing, regionError, waterError, 100.0 * shoreColumns / columns);
+            if (spacing == HeightFunction.REGION_SPACING && regionError > MAX_REGION_ERROR) {
+                failed = true;
+            }
+        }
+
+        for (String noiseType : new String[]{"Standard", "Ridged", "Billowy", "Hybrid"}) {
+            TerrainConfig typed = new TerrainConfig(seed);
+            typed.noiseType = noiseType;
+            HeightFunction exact = HeightFunction.compileExact(typed.snapshot());
+            HeightFunction lattice = HeightFunction.compile(typed.snapshot());
+            long changed = 0;
+            int maxDifference = 0;
+            int[] exactHeights = new int[CHUNK * CHUNK];
+            int[] latticeHeights = new int[CHUNK * CHUNK];
+            for (int cx = -area / 2; cx < area / 2; cx++) {
+                for (int cz = -area / 2; cz < area / 2; cz++) {
+                    exact.heights(exact.getGraph().newGrid(cx * CHUNK, cz * CHUNK, CHUNK, CHUNK), exactHeights);
+                    lattice.heights(lattice.getGraph().newGrid(cx * CHUNK, cz * CHUNK, CHUNK, CHUNK), latticeHeights);
+                    for (int i = 0; i < exactHeights.length; i++) {
+                        int difference = Math.abs(exactHeights[i] - latticeHeights[i]);
+                        if (difference != 0) {
+                            changed++;
+                            maxDifference = Math.max(maxDifference, difference);
+                        }
+                    }
+                }
+            }
+            System.out.printf("%-8s spacing %d moves %.2f%% of column heights, by at most %d blocks%n", noiseType,
+                    HeightFunction.REGION_SPACING, 100.0 * changed / ((long) area * area * CHUNK * CHUNK), maxDifference);
+            if (maxDifference > MAX_HEIGHT_DIFFERENCE) {
+                failed = true;
+            }
+        }
+
+        HeightFunction exact = HeightFunction.compileExact(config);
+        HeightFunction lattice = HeightFunction.compile(config);
+        long[] best = Benchmarks.bestTimes(runs, 4, (run, i) -> switch (i) {
+            case 0 -> time(exact, area, run);
+            case 1 -> time(lattice, area, run);
+            case 2 -> timeSingle(exact, area, run);
+            default -> timeSingle(lattice, area, run);
+        });
+        System.out.printf("%d chunk heights: exact %.1f ms, lattice %.1f ms (%.2fx)%n", area * area, best[0] / 1e6,
+                best[1] / 1e6, (double) best[0] / best[1]);
+        // Single columns read the region layer directly, so they should cost the same either way
+        System.out.printf("%d single column heights: exact %.1f ms, lattice %.1f ms (%.2fx)%n", area * CHUNK * CHUNK,
+                best[2] / 1e6, best[3] / 1e6, (double) best[2] / best[3]);
+        if (failed) {
+            System.err.println("Lattice interpolation exceeds its error bound");
+        }
+        return !failed;
+    }
+
+    // Heights, lakes and sand blend of every chunk in the area, as chunk generation asks for them
+    private static long time(HeightFunction heightFunction, int area, int run) {
+        int[] heights = new int[CHUNK * CHUNK];
+        double[] blend = new double[CHUNK * CHUNK];
+        int originX = (run + 2) * area * CHUNK * 2; // Fresh terrain every run
+        long start = System.nanoTime();
+        for (int cx = 0; cx < area; cx++) {
+            for (int cz = 0; cz < area; cz++) {
+                NoiseGrid grid = heightFunction.getGraph().newGrid(originX + cx * CHUNK, cz * CHUNK, CHUNK, CHUNK);
+                heightFunction.heights(grid, heights);
+                heightFunction.blendFactors(grid, heightFunction.waterRegions(grid), blend);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    // One chunk's worth of columns per area row, as the preview and edge lake checks sample them
+    private static long timeSingle(HeightFunction heightFunction, int area, int run) {
+        int originX = (run + 2) * area * CHUNK * 2;
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int x = 0; x < area * CHUNK; x++) {
+            for (int z = 0; z < CHUNK; z++) {
+                sum += heightFunction.height(originX + x, -z);
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (sum == Long.MIN_VALUE) {
+            System.out.println(sum); // Keeps the JIT from dropping the loop
+        }
+        return time;
+    }
+}
@@ -2,8 +2,11 @@ package edu.kosa.terrainproject.app;
 
 import edu.kosa.terrainproject.graphics.*;
 import edu.kosa.terrainproject.input.InputHandler;
-import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.net.ChunkClient;
+import edu.kosa.terrainproject.net.ChunkProtocol;
+import edu.kosa.terrainproject.terrain.ChunkSource;
 import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.TerrainPreview;
 import edu.kosa.terrainproject.terrain.World;
 
 import imgui.ImGui;
@@ -13,6 +16,7 @@ import imgui.flag.ImGuiConfigFlags;
 import imgui.flag.ImGuiWindowFlags;
 import imgui.gl3.ImGuiImplGl3;
 import imgui.glfw.ImGuiImplGlfw;
+import imgui.type.ImBoolean;
 import imgui.type.ImInt;
 import imgui.type.ImString;
 import org.lwjgl.opengl.GL20;
@@ -20,37 +24,71 @@ import org.lwjgl.opengl.GL20;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class Main {
     private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
     private static final ImGuiImplGlfw imGuiGlfw = new ImGuiImplGlfw();
     private static final ImGuiImplGl3 imGuiGl3 = new ImGuiImplGl3();
-    private static final int RENDER_DISTANCE = 6;
-    private static final Map<String, Chunk> loadedChunksMap = new HashMap<>();
 
     public static void main(String[] args) {
+        FlightPath flight = readFlight(option(args, "--replay"));
         WindowManager windowManager = new WindowManager(1400, 950, "CircleScape");
         LOGGER.info("Window created");
 
         initImGui(windowManager.getWindow());
 
-        long initialSeed = new Random().nextLong();
-        TerrainConfig config = new TerrainConfig(initialSeed);
-        World world = new World(config);
+        // A replay runs on the terrain it was recorded with
+        TerrainConfig config = flight != null ? flight.getConfig() : new TerrainConfig(new Random().nextLong());
+        GlReleaseQueue releaseQueue = new GlReleaseQueue();
+        World world = new World(config, releaseQueue::release, connectChunkServer(args));
         Camera camera = new Camera(800f / 600f);
         TextureLoader textureLoader = new TextureLoader();
         int textureID = textureLoader.loadTexture("textures/atlas.png");
         ShaderProgram shaderProgram = new ShaderProgram();
-        Renderer renderer = new Renderer(shaderProgram, textureID);
+        ShaderProgram packedShaderProgram = ShaderProgram.forPackedFaces();
+        Renderer renderer = new Renderer(shaderProgram, packedShaderProgram, textureID);
         InputHandler inputHandler = new InputHandler(windowManager.getWindow(), camera);
-
-        updateChunks(world, camera);
+        // The camera and world belong to the update thread from here on, this thread only renders snapshots
+        UpdateLoop updateLoop = new UpdateLoop(world, camera, inputHandler, releaseQueue);
+        FlightRecorder recorder = startRecording(option(args, "--record"), world, updateLoop);
+        FrameStats frameStats = null;
+        if (flight != null) {
+            // A fixed distance, so the work done depends on the path and not on how fast this machine is
+            updateLoop.setAdaptiveDistance(false);
+            updateLoop.setRenderDistance(flight.getRenderDistance());
+            updateLoop.setFlightPath(flight);
+            frameStats = new FrameStats();
+        }
+        updateLoop.setFlightRecorder(recorder);
+        TerrainPreview preview = new TerrainPreview();
+        PreviewTexture previewTexture = new PreviewTexture();
+        int previewX = (int) camera.getPosition().x;
+        int previewZ = (int) camera.getPosition().z;
+        preview.request(world.getConfig(), previewX, previewZ);
+        updateLoop.start();
 
         double lastTime = windowManager.getTime();
         ImString seedInput = new ImString(String.valueOf(config.seed), 64);
         String[] noiseTypes = {"Standard", "Ridged", "Billowy", "Hybrid"};
-        ImInt currentNoiseType = new ImInt(0);
+        ImInt currentNoiseType = new ImInt(Math.max(0, Arrays.asList(noiseTypes).indexOf(config.noiseType)));
+        String[] chunkSizes = {"16", "32", "64"};
+        ImInt currentChunkSize = new ImInt(Math.max(0, Arrays.asList(chunkSizes).indexOf(String.valueOf(config.chunkSize))));
+        ImBoolean packedFaces = new ImBoolean(false);
+        ImBoolean erosion = new ImBoolean(config.erosion);
+        ImBoolean occlusionCulling = new ImBoolean(true);
+        ImBoolean reducedFarDetail = new ImBoolean(false);
+        int[] meshBudgetMb = new int[]{(int) (updateLoop.getMeshBudgetBytes() >> 20)};
+        ImBoolean adaptiveDistance = new ImBoolean(flight == null);
+        String[] meshModes = {"Voxel", "Heightfield", "Heightfield beyond 3 chunks"};
+        int[] heightfieldDistances = {Integer.MAX_VALUE, 0, 3};
+        ImInt currentMeshMode = new ImInt(0);
+        int[] renderDistance = new int[]{updateLoop.getRenderDistance()};
+        int[] targetFps = new int[]{60};
         final int fpsSampleSize = 30;
         float[] fpsSamples = new float[fpsSampleSize];
         int fpsIndex = 0;
@@ -77,9 +115,24 @@ public class Main {
             float avgFps = fpsSum / count;
 
             ImGui.setNextWindowPos(1300, 10, ImGuiCond.Always);
-            ImGui.setNextWindowSize(220, 60);
+            ImGui.setNextWindowSize(220, 120);
             ImGui.begin("FPS Counter", ImGuiWindowFlags.NoTitleBar | ImGuiWindowFlags.AlwaysAutoResize | ImGuiWindowFlags.NoBackground | ImGuiWindowFlags.NoMove | ImGuiWindowFlags.NoCollapse);
             ImGui.text(String.format("FPS: %.1f", avgFps));
+            ImGui.text(String.format("Updates/s: %.1f", updateLoop.getTickRate()));
+            RenderSnapshot snapshot = updateLoop.getLatestSnapshot();
+            if (frameStats != null && snapshot != null) {
+                frameStats.addFrame(deltaTime, updateLoop.getResidentMeshBytes());
+                if (updateLoop.isFlightFinished()) {
+                    writeReport(frameStats.report(world.getCreatedChunkCount()), option(args, "--report"));
+                    frameStats = null;
+                    windowManager.requestClose();
+                }
+            }
+            if (snapshot != null) {
+                ImGui.text(String.format("Chunks: %d / %d", snapshot.getVisibleChunks().size(), snapshot.getChunks().size()));
+            }
+            ImGui.text(String.format("Render distance: %d", updateLoop.getRenderDistance()));
+            ImGui.text(String.format("Meshes: %.1f MB, %d parked", updateLoop.getResidentMeshBytes() / 1048576.0, updateLoop.getParkedChunks()));
             ImGui.end();
 
             // Terrain Settings
@@ -92,7 +145,7 @@ public class Main {
             int[] sandHeightThreshold = new int[]{config.sandHeightThreshold};
 
             ImGui.begin("Terrain Settings");
-            ImGui.setWindowSize(400, 270);
+            ImGui.setWindowSize(400, 714);
             ImGui.setWindowPos(10, 10);
             ImGui.text("Press Enter to toggle cursor for GUI interaction");
             boolean configChanged = false;
@@ -129,6 +182,14 @@ public class Main {
                 config.sandHeightThreshold = sandHeightThreshold[0];
                 configChanged = true;
             }
+            if (ImGui.combo("Chunk size", currentChunkSize, chunkSizes)) {
+                config.chunkSize = Integer.parseInt(chunkSizes[currentChunkSize.get()]);
+                configChanged = true;
+            }
+            if (ImGui.checkbox("Erosion", erosion)) {
+                config.erosion = erosion.get();
+                configChanged = true;
+            }
             if (ImGui.inputText("Seed", seedInput)) {
                 try {
                     config.seed = Long.parseLong(seedInput.get().trim());
@@ -138,32 +199,153 @@ public class Main {
                 }
             }
             if (configChanged) {
-                LOGGER.info("Generating world with seed {}", config.seed);
-                world.regenerate(config);
-                loadedChunksMap.values().forEach(Chunk::cleanup);
-                loadedChunksMap.clear();
-                updateChunks(world, camera);
+                updateLoop.requestConfig(config.snapshot());
+            }
+            // The preview follows the camera once it gets near the edge of the map
+            int margin = TerrainPreview.SIZE * TerrainPreview.BLOCKS_PER_PIXEL / 4;
+            boolean previewMoved = snapshot != null && (Math.abs(snapshot.getCameraPosition().x - previewX) > margin
+                    || Math.abs(snapshot.getCameraPosition().z - previewZ) > margin);
+            if (previewMoved) {
+                previewX = (int) snapshot.getCameraPosition().x;
+                previewZ = (int) snapshot.getCameraPosition().z;
+            }
+            if (configChanged || previewMoved) {
+                preview.request(config.snapshot(), previewX, previewZ); // Abandons the map still being refined
+            }
+            if (ImGui.checkbox("Packed faces", packedFaces)) {
+                updateLoop.setPackedFaces(packedFaces.get()); // Rebuilt by the update thread in the new format
             }
+            if (ImGui.combo("Mesh mode", currentMeshMode, meshModes)) {
+                updateLoop.setHeightfieldDistance(heightfieldDistances[currentMeshMode.get()]); // Voxel only with packed faces
+            }
+            if (ImGui.checkbox("Occlusion culling", occlusionCulling)) {
+                updateLoop.setOcclusionCulling(occlusionCulling.get());
+            }
+            if (ImGui.checkbox("Reduce far detail", reducedFarDetail)) {
+                updateLoop.setReducedFarDetail(reducedFarDetail.get()); // Off refines the coarse chunks a few per tick
+            }
+            if (ImGui.sliderInt("Mesh budget (MB)", meshBudgetMb, 32, 1024)) {
+                updateLoop.setMeshBudgetBytes((long) meshBudgetMb[0] << 20);
+            }
+            if (ImGui.checkbox("Adaptive render distance", adaptiveDistance)) {
+                renderDistance[0] = updateLoop.getRenderDistance(); // Manual mode starts from the adapted value
+                updateLoop.setRenderDistance(renderDistance[0]);
+                updateLoop.setAdaptiveDistance(adaptiveDistance.get());
+            }
+            if (adaptiveDistance.get()) {
+                if (ImGui.sliderInt("Target FPS", targetFps, 30, 144)) {
+                    updateLoop.setTargetFrameSeconds(1f / targetFps[0]);
+                }
+            } else if (ImGui.sliderInt("Render distance", renderDistance, updateLoop.getMinRenderDistance(), updateLoop.getMaxRenderDistance())) {
+                updateLoop.setRenderDistance(renderDistance[0]);
+            }
+            previewTexture.update(preview);
+            TerrainPreview.Image previewImage = preview.getImage();
+            ImGui.text(previewImage == null || !previewImage.isComplete() ? "Preview (refining...)"
+                    : String.format("Preview, %d blocks per pixel", TerrainPreview.BLOCKS_PER_PIXEL));
+            ImGui.image(previewTexture.getTextureID(), TerrainPreview.SIZE, TerrainPreview.SIZE);
             ImGui.end();
 
-            inputHandler.processInput(deltaTime);
-            updateChunks(world, camera);
+            inputHandler.poll();
 
-            GL20.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
-            renderer.render(camera, new ArrayList<>(loadedChunksMap.values()), inputHandler.getRadius());
+            if (snapshot != null) {
+                releaseQueue.drain(snapshot);
+                renderer.render(snapshot);
+            } else {
+                GL20.glClear(GL20.GL_COLOR_BUFFER_BIT | GL20.GL_DEPTH_BUFFER_BIT);
+            }
 
             ImGui.render();
             imGuiGl3.renderDrawData(ImGui.getDrawData());
+            updateLoop.reportFrame(deltaTime, (float) (windowManager.getTime() - currentTime)); // Work before the swap
 
             windowManager.update();
         }
 
+        updateLoop.stop();
+        preview.shutdown();
+        previewTexture.cleanup();
+        if (recorder != null) {
+            recorder.close();
+        }
         cleanupImGui();
+        releaseQueue.drainAll();
+        world.cleanup();
+        world.close();
         textureLoader.cleanup();
         shaderProgram.cleanup();
+        packedShaderProgram.cleanup();
         windowManager.cleanup();
     }
 
+    // Value following name on the command line, null if absent
+    private static String option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    // --server host[:port] streams chunks from a ChunkServer instead of generating them here
+    private static ChunkSource connectChunkServer(String[] args) {
+        String address = option(args, "--server");
+        if (address == null) {
+            return null;
+        }
+        int colon = address.lastIndexOf(':');
+        String host = colon < 0 ? address : address.substring(0, colon);
+        int port = colon < 0 ? ChunkProtocol.DEFAULT_PORT : Integer.parseInt(address.substring(colon + 1));
+        try {
+            return new ChunkClient(host, port);
+        } catch (IOException e) {
+            LOGGER.error("Could not reach chunk server at {}, generating locally", address, e);
+            return null;
+        }
+    }
+
+    // --replay file flies the recorded path and exits with a report, a broken recording ends the run
+    private static FlightPath readFlight(String file) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            FlightPath flight = FlightPath.read(Path.of(file));
+            LOGGER.info("Replaying {} samples, {} seconds, from {}", flight.getSampleCount(), flight.getDuration(), file);
+            return flight;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read flight recording " + file, e);
+        }
+    }
+
+    // --record file writes the camera path of this session for --replay
+    private static FlightRecorder startRecording(String file, World world, UpdateLoop updateLoop) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new FlightRecorder(Path.of(file), world.getConfig(), updateLoop.getRenderDistance());
+        } catch (IOException e) {
+            LOGGER.error("Could not record to {}", file, e);
+            return null;
+        }
+    }
+
+    // --report file appends the replay results as one line, so runs of different builds can be compared
+    private static void writeReport(String report, String file) {
+        LOGGER.info("Replay finished: {}", report);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.writeString(Path.of(file), report + System.lineSeparator(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.error("Could not write the replay report to {}", file, e);
+        }
+    }
+
     private static void initImGui(long window) {
         ImGui.createContext();
         ImGuiIO io = ImGui.getIO();
@@ -178,34 +360,4 @@ public class Main {
         imGuiGlfw.dispose();
         ImGui.destroyContext();
     }
-
-    private static void updateChunks(World world, Camera camera) {
-        int chunkX = (int) Math.floor(camera.getPosition().x / Chunk.SIZE);
-        int chunkZ = (int) Math.floor(camera.getPosition().z / Chunk.SIZE);
-
-        Set<String> neededChunks = new HashSet<>();
-
-        for (int x = chunkX - RENDER_DISTANCE; x <= chunkX + RENDER_DISTANCE; x++) {
-            for (int z = chunkZ - RENDER_DISTANCE; z <= chunkZ + RENDER_DISTANCE; z++) {
-                String key = x + "," + z;
-                neededChunks.add(key);
-                if (!loadedChunksMap.containsKey(key)) {
-                    Chunk chunk = world.getChunk(x, z);
-                    if (chunk.getMesh() == null) {
-                        chunk.generateMesh(world);
-                    }
-                    loadedChunksMap.put(key, chunk);
-                }
-            }
-        }
-
-        // Remove chunks out of range
-        loadedChunksMap.keySet().removeIf(key -> {
-            if (!neededChunks.contains(key)) {
-                loadedChunksMap.get(key).cleanup();
-                return true;
-            }
-            return false;
-        });
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.noise.FastPerlinNoiseGenerator;
+import edu.kosa.terrainproject.noise.FbmGenerator;
+import edu.kosa.terrainproject.noise.NoiseGenerator;
+import edu.kosa.terrainproject.noise.NoiseVariant;
+import edu.kosa.terrainproject.noise.PerlinNoiseGenerator;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+
+import java.util.Random;
+
+// Benchmarks noise [seed] [samples] [runs]
+// Compares the float FastPerlinNoiseGenerator with PerlinNoiseGenerator: the largest deviation over random points out
+// to 100000 blocks from the origin at every scale the terrain uses, how many default terrain heights it would move,
+// and the throughput of both kernels, raw and inside the terrain FBM. Exits with status 1 when the deviation exceeds
+// FastPerlinNoiseGenerator.MAX_ERROR.
+public class NoiseKernelBenchmark {
+    private static final double[] SCALES = {0.055, 0.04, 0.015, 0.055 * 1.3 * 1.3 * 1.3 * 1.3 * 1.3};
+    private static final double RANGE = 100_000;
+    private static final int HEIGHT_AREA = 1024; // Columns per side compared by height
+
+    static boolean run(long seed, int samples, int runs) {
+        double maxError = 0;
+        Random random = new Random(seed);
+        for (double scale : SCALES) {
+            NoiseGenerator exact = new PerlinNoiseGenerator(seed, scale);
+            NoiseGenerator fast = new FastPerlinNoiseGenerator(seed, scale);
+            double scaleError = 0;
+            for (int i = 0; i < samples; i++) {
+                double x = (random.nextDouble() * 2 - 1) * RANGE;
+                double z = (random.nextDouble() * 2 - 1) * RANGE;
+                scaleError = Math.max(scaleError, Math.abs(fast.noise(x, z) - exact.noise(x, z)));
+            }
+            System.out.printf("scale %.4f: max deviation %.2e%n", scale, scaleError);
+            maxError = Math.max(maxError, scaleError);
+        }
+
+        TerrainConfig config = new TerrainConfig(seed);
+        FbmGenerator exact = new FbmGenerator(new PerlinNoiseGenerator(seed, config.scale));
+        FbmGenerator fast = new FbmGenerator(new FastPerlinNoiseGenerator(seed, config.scale));
+        int changed = 0;
+        for (int x = 0; x < HEIGHT_AREA; x++) {
+            for (int z = 0; z < HEIGHT_AREA; z++) {
+                if (height(exact, config, x, z) != height(fast, config, x, z)) {
+                    changed++;
+                }
+            }
+        }
+        System.out.printf("terrain heights changed: %d of %d columns%n", changed, HEIGHT_AREA * HEIGHT_AREA);
+
+        double[] sink = new double[1];
+        long[] best = Benchmarks.bestTimes(runs, 4, (run, i) -> {
+            long start = System.nanoTime();
+            sink[0] += switch (i) {
+                case 0 -> sweep(exact.getNoiseGenerator(), samples);
+                case 1 -> sweep(fast.getNoiseGenerator(), samples);
+                case 2 -> sweep(exact, config, samples / config.octaves);
+                default -> sweep(fast, config, samples / config.octaves);
+            };
+            return System.nanoTime() - start;
+        });
+        System.out.printf("noise calls/us: double %.1f, float %.1f (%.2fx)%n", samples / (best[0] / 1e3),
+                samples / (best[1] / 1e3), (double) best[0] / best[1]);
+        System.out.printf("terrain fbm/us: double %.1f, float %.1f (%.2fx)%n", samples / config.octaves / (best[2] / 1e3),
+                samples / config.octaves / (best[3] / 1e3), (double) best[2] / best[3]);
+        System.out.printf("max deviation %.2e, bound %.0e (checksum %.3f)%n", maxError, FastPerlinNoiseGenerator.MAX_ERROR, sink[0]);
+        if (maxError > FastPerlinNoiseGenerator.MAX_ERROR) {
+            System.err.println("Fast kernel exceeds its error bound");
+            return false;
+        }
+        return true;
+    }
+
+    // The base height of a column before biomes, as HeightFunction computes it
+    private static int height(FbmGenerator fbm, TerrainConfig config, int x, int z) {
+        double value = (NoiseVariant.STANDARD.apply(fbm, x, z, config.octaves, config.persistence, config.lacunarity) + 1) / 2;
+        return (int) Math.floor(value * config.heightScale + config.baseHeight);
+    }
+
+    private static double sweep(NoiseGenerator generator, int samples) {
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            sum += generator.noise(i % 1000 * 0.73, i / 1000 * 0.73);
+        }
+        return sum;
+    }
+
+    private static double sweep(FbmGenerator fbm, TerrainConfig config, int samples) {
+        double sum = 0;
+        for (int i = 0; i < samples; i++) {
+            sum += fbm.standardFbm(i % 1000, i / 1000, config.octaves, config.persistence, config.lacunarity);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,81 @@
+package edu.kosa.terrainproject.app;
+
+// Picks the streaming radius that holds a frame time target. With vsync the frame interval never drops below the
+// display period, so it only tells when frames are missed; headroom is judged from the time a frame spends before
+// the buffer swap. The radius shrinks quickly once frames run late or the chunk pipeline falls behind, and grows
+// slowly while there is headroom and nothing is waiting. Every change is followed by a cooldown, and the grow and
+// shrink conditions are far apart, so the radius does not oscillate at a boundary.
+// Update thread only.
+public class RenderDistanceController {
+    private static final float SHRINK_FRAME_RATIO = 1.2f; // Frame interval above target * this is late
+    private static final float GROW_FRAME_RATIO = 1.05f; // Frame interval must stay within target * this to grow
+    private static final float GROW_WORK_RATIO = 0.6f; // And the work before the swap below target * this
+    private static final float SHRINK_SECONDS = 0.5f;
+    private static final float GROW_SECONDS = 2f;
+    private static final float BACKLOG_SECONDS = 4f; // A pipeline that never catches up costs a ring too
+    private static final float COOLDOWN_SECONDS = 1.5f; // New rings cause upload spikes, let them settle
+    private int minDistance;
+    private int maxDistance;
+    private int distance;
+    private float lateSeconds;
+    private float headroomSeconds;
+    private float backlogSeconds;
+    private float cooldown;
+
+    public RenderDistanceController(int minDistance, int maxDistance, int initialDistance) {
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.distance = Math.max(minDistance, Math.min(maxDistance, initialDistance));
+    }
+
+    // frameSeconds and workSeconds are smoothed render thread measurements, backlog counts chunks in the square
+    // that are not drawable yet
+    public int update(float deltaTime, float targetFrameSeconds, float frameSeconds, float workSeconds, int backlog) {
+        if (cooldown > 0) {
+            cooldown -= deltaTime;
+            lateSeconds = 0;
+            headroomSeconds = 0;
+            backlogSeconds = 0;
+            return distance;
+        }
+        lateSeconds = frameSeconds > targetFrameSeconds * SHRINK_FRAME_RATIO ? lateSeconds + deltaTime : 0;
+        backlogSeconds = backlog > 0 ? backlogSeconds + deltaTime : 0;
+        boolean headroom = frameSeconds <= targetFrameSeconds * GROW_FRAME_RATIO
+                && workSeconds < targetFrameSeconds * GROW_WORK_RATIO && backlog == 0;
+        headroomSeconds = headroom ? headroomSeconds + deltaTime : 0;
+
+        if ((lateSeconds > SHRINK_SECONDS || backlogSeconds > BACKLOG_SECONDS) && distance > minDistance) {
+            distance--;
+            cooldown = COOLDOWN_SECONDS;
+        } else if (headroomSeconds > GROW_SECONDS && distance < maxDistance) {
+            distance++;
+            cooldown = COOLDOWN_SECONDS;
+        }
+        return distance;
+    }
+
+    // Manual override, the controller continues from here when adaptation is enabled again
+    public void setDistance(int distance) {
+        this.distance = Math.max(minDistance, Math.min(maxDistance, distance));
+        cooldown = COOLDOWN_SECONDS;
+    }
+
+    // For a chunk size change, the distance is kept at the same radius in blocks by the caller
+    public void setBounds(int minDistance, int maxDistance) {
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        setDistance(distance);
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public int getMinDistance() {
+        return minDistance;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+}
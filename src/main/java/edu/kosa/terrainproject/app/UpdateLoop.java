@@ -0,0 +1,389 @@
+package edu.kosa.terrainproject.app;
+
+import edu.kosa.terrainproject.graphics.Camera;
+import edu.kosa.terrainproject.graphics.GlReleaseQueue;
+import edu.kosa.terrainproject.graphics.MeshResidency;
+import edu.kosa.terrainproject.graphics.OcclusionCuller;
+import edu.kosa.terrainproject.graphics.RenderSnapshot;
+import edu.kosa.terrainproject.input.InputHandler;
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.terrain.ChunkPos;
+import edu.kosa.terrainproject.terrain.ChunkPrefetcher;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+import edu.kosa.terrainproject.terrain.World;
+import edu.kosa.terrainproject.util.LongObjectMap;
+import org.joml.Matrix4f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Input integration, camera movement and chunk streaming on a thread of their own. Every tick ends by publishing
+// an immutable RenderSnapshot; the render thread always draws the latest one, so neither side is paced by the other.
+// Owns the world, the camera and the loaded chunk set, nothing here may touch GL.
+public class UpdateLoop implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdateLoop.class);
+    private static final long TICK_NANOS = 1_000_000_000L / 120;
+    // View distance bounds in blocks, the streaming square is sized in chunks of whatever width the world uses
+    private static final int MIN_VIEW_BLOCKS = 48;
+    private static final int MAX_VIEW_BLOCKS = 256;
+    private static final int INITIAL_VIEW_BLOCKS = 96;
+    private static final int UNLOAD_MARGIN = 2; // Meshes survive a few chunks of backtracking
+    private static final float FRAME_SMOOTHING = 0.1f; // Weight of the newest frame measurement
+    private static final int MAX_REMESHES_PER_TICK = 8;
+    private static final int MAX_REFINES_PER_TICK = 8; // Each one generates a chunk again on this thread
+    private static final int BLOCKS_PER_ERROR_BLOCK = 32; // Reduced far detail: view distance per block of height error
+    private static final long DEFAULT_MESH_BUDGET_BYTES = 256L << 20;
+    private static final int PREFETCH_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    private final World world;
+    private final Camera camera;
+    private final InputHandler inputHandler;
+    private final GlReleaseQueue releaseQueue;
+    private final LongObjectMap<Chunk> loadedChunks = new LongObjectMap<>(); // Keyed by ChunkPos.pack
+    private final AtomicReference<RenderSnapshot> latest = new AtomicReference<>();
+    private final AtomicReference<TerrainSnapshot> requestedConfig = new AtomicReference<>();
+    private final ChunkPrefetcher prefetcher;
+    private final MeshResidency residency;
+    private final RenderDistanceController distanceController;
+    private final OcclusionCuller culler = new OcclusionCuller(128, 96); // Matches the camera's 4:3 projection
+    private volatile boolean occlusionCulling = true;
+    private volatile boolean requestedPackedFaces;
+    private volatile boolean running = true;
+    private volatile float tickRate;
+    private volatile long meshBudgetBytes = DEFAULT_MESH_BUDGET_BYTES;
+    private volatile long residentMeshBytes;
+    private volatile int parkedChunks;
+    private volatile boolean adaptiveDistance = true;
+    private volatile int requestedDistance; // Used while adaptation is off
+    private volatile float targetFrameSeconds = 1 / 60f;
+    private volatile float frameSeconds; // Written by the render thread only
+    private volatile float workSeconds;
+    private volatile int renderDistanceShown;
+    private volatile int minRenderDistance;
+    private volatile int maxRenderDistance;
+    private volatile int heightfieldDistance = Integer.MAX_VALUE; // Chunks at least this far use the heightfield mesher
+    private volatile boolean flightFinished;
+    private volatile boolean reducedFarDetail; // Off by default, coarse chunks only pay off with many octaves
+    private FlightRecorder flightRecorder; // Set before start(), like the flight path
+    private FlightPath flightPath;
+    private float flightSeconds;
+    private int flightTicks;
+    private int renderDistance;
+    private int chunkSize;
+    private int backlog;
+    private boolean packedFaces;
+    private long sequence;
+    private Thread thread;
+
+    public UpdateLoop(World world, Camera camera, InputHandler inputHandler, GlReleaseQueue releaseQueue) {
+        this.world = world;
+        this.camera = camera;
+        this.inputHandler = inputHandler;
+        this.releaseQueue = releaseQueue;
+        this.prefetcher = new ChunkPrefetcher(world, PREFETCH_THREADS);
+        this.chunkSize = world.getChunkSize();
+        this.renderDistance = toChunks(INITIAL_VIEW_BLOCKS);
+        this.requestedDistance = renderDistance;
+        this.renderDistanceShown = renderDistance;
+        this.minRenderDistance = toChunks(MIN_VIEW_BLOCKS);
+        this.maxRenderDistance = toChunks(MAX_VIEW_BLOCKS);
+        this.distanceController = new RenderDistanceController(minRenderDistance, maxRenderDistance, renderDistance);
+        this.residency = new MeshResidency(releaseQueue, DEFAULT_MESH_BUDGET_BYTES, renderDistance + UNLOAD_MARGIN);
+    }
+
+    public void start() {
+        thread = new Thread(this, "terrain-update");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        prefetcher.shutdown();
+    }
+
+    // Latest published frame, null until the first tick completes
+    public RenderSnapshot getLatestSnapshot() {
+        return latest.get();
+    }
+
+    // Applied at the start of the next tick, intermediate requests are dropped
+    public void requestConfig(TerrainSnapshot config) {
+        requestedConfig.set(config);
+    }
+
+    public void setPackedFaces(boolean packedFaces) {
+        requestedPackedFaces = packedFaces;
+    }
+
+    public void setOcclusionCulling(boolean occlusionCulling) {
+        this.occlusionCulling = occlusionCulling;
+    }
+
+    public float getTickRate() {
+        return tickRate;
+    }
+
+    // Mesh bytes of loaded and parked chunks together, see MeshResidency
+    public void setMeshBudgetBytes(long meshBudgetBytes) {
+        this.meshBudgetBytes = meshBudgetBytes;
+    }
+
+    public long getMeshBudgetBytes() {
+        return meshBudgetBytes;
+    }
+
+    public long getResidentMeshBytes() {
+        return residentMeshBytes;
+    }
+
+    public int getParkedChunks() {
+        return parkedChunks;
+    }
+
+    // Render thread, once per frame: the full frame interval and the part of it spent before the buffer swap
+    public void reportFrame(float frameSeconds, float workSeconds) {
+        this.frameSeconds += (frameSeconds - this.frameSeconds) * FRAME_SMOOTHING;
+        this.workSeconds += (workSeconds - this.workSeconds) * FRAME_SMOOTHING;
+    }
+
+    public void setAdaptiveDistance(boolean adaptiveDistance) {
+        this.adaptiveDistance = adaptiveDistance;
+    }
+
+    public void setRenderDistance(int renderDistance) {
+        requestedDistance = renderDistance;
+    }
+
+    public void setTargetFrameSeconds(float targetFrameSeconds) {
+        this.targetFrameSeconds = targetFrameSeconds;
+    }
+
+    // 0 meshes every chunk as a heightfield, Integer.MAX_VALUE none; ignored while packed faces are on
+    public void setHeightfieldDistance(int heightfieldDistance) {
+        this.heightfieldDistance = heightfieldDistance;
+    }
+
+    // Far chunks are generated with fewer terrain octaves and refined as the camera approaches, see HeightFunction
+    public void setReducedFarDetail(boolean reducedFarDetail) {
+        this.reducedFarDetail = reducedFarDetail;
+    }
+
+    // Records the camera pose of every tick, call before start()
+    public void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    // Drives the camera from the recording instead of input, call before start()
+    public void setFlightPath(FlightPath flightPath) {
+        this.flightPath = flightPath;
+    }
+
+    // True once the camera reached the end of the flight path
+    public boolean isFlightFinished() {
+        return flightFinished;
+    }
+
+    public int getRenderDistance() {
+        return renderDistanceShown;
+    }
+
+    public int getMinRenderDistance() {
+        return minRenderDistance;
+    }
+
+    public int getMaxRenderDistance() {
+        return maxRenderDistance;
+    }
+
+    @Override
+    public void run() {
+        long last = System.nanoTime();
+        long nextTick = last;
+        while (running) {
+            long now = System.nanoTime();
+            float deltaTime = (now - last) / 1e9f;
+            last = now;
+            try {
+                tick(deltaTime);
+            } catch (RuntimeException e) {
+                LOGGER.error("Update tick failed", e);
+            }
+            tickRate = deltaTime > 0 ? 1 / deltaTime : 0;
+
+            // Fixed rate when there is time to spare, a slow tick simply delays the next one
+            nextTick = Math.max(nextTick + TICK_NANOS, System.nanoTime());
+            long wait = nextTick - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    private void tick(float deltaTime) {
+        TerrainSnapshot config = requestedConfig.getAndSet(null);
+        if (config != null) {
+            LOGGER.info("Generating world with seed {}", config.seed);
+            prefetcher.runExclusive(() -> world.regenerate(config)); // Waits out prefetches of the old terrain
+            if (config.chunkSize != chunkSize) {
+                resizeChunks(config.chunkSize);
+            }
+            loadedChunks.clear(); // Meshes stay alive in the world's configuration cache
+            residency.clear();
+        }
+        if (packedFaces != requestedPackedFaces) {
+            boolean previous = packedFaces;
+            packedFaces = requestedPackedFaces;
+            loadedChunks.forEach((key, chunk) -> chunk.releaseMeshData(previous)); // The renderer frees the buffers
+            residency.releaseAll(); // Not in the snapshot, so the renderer would never see their old meshes
+        }
+
+        if (flightPath != null) {
+            flightPath.apply(flightTicks, camera);
+            flightFinished = flightTicks >= flightPath.getSampleCount() - 1;
+        } else {
+            inputHandler.processInput(deltaTime);
+        }
+        if (flightRecorder != null) {
+            flightSeconds += deltaTime;
+            flightRecorder.record(flightSeconds, camera);
+        }
+        flightTicks++;
+        world.remeshDirtyChunks(MAX_REMESHES_PER_TICK);
+        if (adaptiveDistance) {
+            renderDistance = distanceController.update(deltaTime, targetFrameSeconds, frameSeconds, workSeconds, backlog);
+        } else if (renderDistance != requestedDistance) {
+            distanceController.setDistance(requestedDistance);
+            renderDistance = distanceController.getDistance();
+        }
+        renderDistanceShown = renderDistance;
+        updateChunks();
+        prefetcher.update(camera.getPosition().x, camera.getPosition().z, deltaTime, renderDistance, detailLevel(renderDistance));
+        publish();
+    }
+
+    // Keeps the view distance in blocks when the chunk width changes
+    private void resizeChunks(int newChunkSize) {
+        int blocks = renderDistance * chunkSize;
+        int requestedBlocks = requestedDistance * chunkSize;
+        chunkSize = newChunkSize;
+        minRenderDistance = toChunks(MIN_VIEW_BLOCKS);
+        maxRenderDistance = toChunks(MAX_VIEW_BLOCKS);
+        distanceController.setBounds(minRenderDistance, maxRenderDistance);
+        distanceController.setDistance(toChunks(blocks));
+        renderDistance = distanceController.getDistance();
+        requestedDistance = Math.max(minRenderDistance, Math.min(maxRenderDistance, toChunks(requestedBlocks)));
+    }
+
+    private int toChunks(int blocks) {
+        return Math.max(1, Math.round((float) blocks / chunkSize));
+    }
+
+    private void updateChunks() {
+        int chunkX = (int) Math.floor(camera.getPosition().x / chunkSize);
+        int chunkZ = (int) Math.floor(camera.getPosition().z / chunkSize);
+
+        int waiting = 0;
+        int refines = 0;
+        for (int x = chunkX - renderDistance; x <= chunkX + renderDistance; x++) {
+            for (int z = chunkZ - renderDistance; z <= chunkZ + renderDistance; z++) {
+                long key = ChunkPos.pack(x, z);
+                int distance = Math.max(Math.abs(x - chunkX), Math.abs(z - chunkZ));
+                int detailLevel = detailLevel(distance);
+                Chunk chunk = loadedChunks.get(key);
+                if (chunk == null) {
+                    chunk = residency.reclaim(key); // Back across the border, its meshes are still there
+                    if (chunk == null) {
+                        chunk = available(x, z, detailLevel); // Remote chunks show up on a later tick, the loop never waits for them
+                    }
+                    if (chunk == null) {
+                        waiting++;
+                        continue;
+                    }
+                    loadedChunks.put(key, chunk);
+                }
+                if (chunk.getDetailLevel() > detailLevel && refines < MAX_REFINES_PER_TICK) {
+                    world.refineChunk(chunk, detailLevel); // The coarse mesh is drawn until the remesh
+                    refines++;
+                }
+                if (!packedFaces) {
+                    chunk.setMeshMode(distance >= heightfieldDistance ? Chunk.MeshMode.HEIGHTFIELD : Chunk.MeshMode.VOXEL);
+                }
+                boolean diagonals = !packedFaces && chunk.getMeshMode() == Chunk.MeshMode.HEIGHTFIELD;
+                if (!chunk.hasMeshData(packedFaces) && neighborsAvailable(x, z, diagonals, detailLevel(distance + 1))) {
+                    if (packedFaces) {
+                        chunk.generateFaceMesh(world);
+                    } else {
+                        chunk.generateMesh(world);
+                    }
+                }
+                if (!chunk.hasMeshData(packedFaces) || chunk.hasPendingUpload()) {
+                    waiting++;
+                }
+            }
+        }
+
+        // Chunks out of range stop being drawn, their meshes are freed only when the residency evicts them
+        loadedChunks.removeIf((key, chunk) -> {
+            if (Math.abs(ChunkPos.unpackX(key) - chunkX) > renderDistance
+                    || Math.abs(ChunkPos.unpackZ(key) - chunkZ) > renderDistance) {
+                residency.park(key, chunk);
+                return true;
+            }
+            return false;
+        });
+        backlog = waiting;
+        residency.setBudgetBytes(meshBudgetBytes);
+        residency.setUnloadDistance(renderDistance + UNLOAD_MARGIN);
+        residency.evict(loadedChunks.values(), chunkX, chunkZ);
+        residentMeshBytes = residency.getResidentBytes();
+        parkedChunks = residency.getParkedCount();
+    }
+
+    // Faces on the chunk border read the edge neighbours, heightfield corners the diagonal ones as well
+    private boolean neighborsAvailable(int chunkX, int chunkZ, boolean diagonals, int detailLevel) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if ((dx != 0 || dz != 0) && (diagonals || dx == 0 || dz == 0) && available(chunkX + dx, chunkZ + dz, detailLevel) == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Chunk available(int chunkX, int chunkZ, int detailLevel) {
+        CompletableFuture<Chunk> request = world.requestChunk(chunkX, chunkZ, detailLevel);
+        if (!request.isDone() || request.isCompletedExceptionally()) {
+            return null; // A failed request is sent again on the next tick
+        }
+        return request.join();
+    }
+
+    // A chunk this many chunks from the camera may be off by a block of height per BLOCKS_PER_ERROR_BLOCK of distance
+    private int detailLevel(int distance) {
+        return reducedFarDetail ? world.getDetailLevel(distance * chunkSize / BLOCKS_PER_ERROR_BLOCK) : 0;
+    }
+
+    private void publish() {
+        sequence++;
+        List<Chunk> chunks = loadedChunks.values();
+        Matrix4f viewProjection = new Matrix4f(camera.getProjectionMatrix()).mul(camera.getViewMatrix());
+        List<Chunk> visible = culler.cull(chunks, viewProjection, occlusionCulling);
+        residency.markVisible(visible, sequence);
+        latest.set(new RenderSnapshot(sequence, chunks, visible, camera, packedFaces,
+                renderDistance * chunkSize - 1f));
+        releaseQueue.published(sequence);
+    }
+}
@@ -0,0 +1,34 @@
+package edu.kosa.terrainproject.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Block data of one chunk generated from noise, or generated again at a finer detail level. The duration covers the
+// noise, lakes and block filling; chunks received from a chunk server are not generated here and have no event.
+@Name("edu.kosa.terrainproject.ChunkGeneration")
+@Label("Chunk Generation")
+@Category({"Terrain Project", "Chunks"})
+@Description("Generation of a chunk's blocks from the height function")
+@StackTrace(false)
+public class ChunkGenerationEvent extends Event {
+    @Label("Chunk X")
+    public int chunkX;
+
+    @Label("Chunk Z")
+    public int chunkZ;
+
+    @Label("Noise Type")
+    public String noiseType;
+
+    @Label("Detail Level")
+    @Description("Terrain octaves dropped, 0 is full detail")
+    public int detailLevel;
+
+    @Label("Refinement")
+    @Description("A coarse chunk generated again closer to the camera")
+    public boolean refinement;
+}
@@ -0,0 +1,39 @@
+package edu.kosa.terrainproject.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Mesh data of one chunk built on the update thread, the upload to the GPU is a MeshUploadEvent of its own
+@Name("edu.kosa.terrainproject.ChunkMesh")
+@Label("Chunk Mesh Build")
+@Category({"Terrain Project", "Chunks"})
+@Description("Building the mesh data of a chunk")
+@StackTrace(false)
+public class ChunkMeshEvent extends Event {
+    @Label("Chunk X")
+    public int chunkX;
+
+    @Label("Chunk Z")
+    public int chunkZ;
+
+    @Label("Format")
+    @Description("Voxel, Heightfield or Packed Faces")
+    public String format;
+
+    @Label("Vertices")
+    @Description("Vertices uploaded, packed faces expand to four each in the shader")
+    public int vertexCount;
+
+    @Label("Faces")
+    @Description("Quads of two triangles each")
+    public int faceCount;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,29 @@
+package edu.kosa.terrainproject.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// GL meshes of one chunk deleted on the render thread, whether it was evicted by the mesh budget, left the unload
+// distance or dropped with its configuration from the chunk cache
+@Name("edu.kosa.terrainproject.ChunkUnload")
+@Label("Chunk Unload")
+@Category({"Terrain Project", "Chunks"})
+@Description("Deletion of a chunk's GL meshes")
+@StackTrace(false)
+public class ChunkUnloadEvent extends Event {
+    @Label("Chunk X")
+    public int chunkX;
+
+    @Label("Chunk Z")
+    public int chunkZ;
+
+    @Label("Size")
+    @Description("GPU memory freed")
+    @DataAmount
+    public long bytes;
+}
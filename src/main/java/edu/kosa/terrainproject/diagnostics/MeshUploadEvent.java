@@ -0,0 +1,31 @@
+package edu.kosa.terrainproject.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Buffers of one chunk mesh created on the render thread, the time it takes stalls the frame
+@Name("edu.kosa.terrainproject.MeshUpload")
+@Label("Mesh Upload")
+@Category({"Terrain Project", "Rendering"})
+@Description("Upload of built mesh data to GL buffers")
+@StackTrace(false)
+public class MeshUploadEvent extends Event {
+    @Label("Chunk X")
+    public int chunkX;
+
+    @Label("Chunk Z")
+    public int chunkZ;
+
+    @Label("Format")
+    @Description("Voxel, Heightfield or Packed Faces")
+    public String format;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -21,6 +21,15 @@ public class Camera {
         yaw += deltaX * sensitivity;
     }
 
+    public float getYaw() {
+        return yaw;
+    }
+
+    // For replays, which set the pose directly instead of integrating input
+    public void setYaw(float yaw) {
+        this.yaw = yaw;
+    }
+
     public void move(float forwardAmount, float rightAmount) {
         Vector3f forward = new Vector3f(
                 (float) Math.cos(Math.toRadians(yaw)),
@@ -0,0 +1,63 @@
+package edu.kosa.terrainproject.graphics;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+
+import java.nio.IntBuffer;
+
+// One 32-bit record per visible face, expanded into a quad by ShaderProgram.forPackedFaces()
+public class FaceMesh {
+    private final int vaoID;
+    private final int vboID;
+    private final int faceCount;
+    private final int originX;
+    private final int originZ;
+
+    public FaceMesh(int[] faces, int faceCount, int originX, int originZ) {
+        this.faceCount = faceCount;
+        this.originX = originX;
+        this.originZ = originZ;
+
+        vaoID = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(vaoID);
+
+        // Faces VBO, advanced once per instance
+        vboID = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
+        IntBuffer faceBuffer = BufferUtils.createIntBuffer(faceCount);
+        faceBuffer.put(faces, 0, faceCount).flip();
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, faceBuffer, GL15.GL_STATIC_DRAW);
+        GL30.glVertexAttribIPointer(0, 1, GL11.GL_UNSIGNED_INT, 0, 0);
+        GL20.glEnableVertexAttribArray(0);
+        GL33.glVertexAttribDivisor(0, 1);
+
+        // Unbind
+        GL30.glBindVertexArray(0);
+    }
+
+    // Local block coordinates must fit the shader layout: x/z < 64, y < 512
+    public static int pack(int x, int y, int z, int face, byte type) {
+        return x | (z << 6) | (y << 12) | (face << 21) | ((type & 0xFF) << 24);
+    }
+
+    public void render(ShaderProgram shaderProgram) {
+        shaderProgram.setChunkOrigin(originX, originZ);
+        GL30.glBindVertexArray(vaoID);
+        GL31.glDrawArraysInstanced(GL11.GL_TRIANGLES, 0, 6, faceCount);
+        GL30.glBindVertexArray(0);
+    }
+
+    public long getByteSize() {
+        return 4L * faceCount;
+    }
+
+    public void cleanup() {
+        GL30.glDeleteVertexArrays(vaoID);
+        GL15.glDeleteBuffers(vboID);
+    }
+}
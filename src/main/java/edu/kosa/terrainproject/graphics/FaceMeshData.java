@@ -0,0 +1,27 @@
+package edu.kosa.terrainproject.graphics;
+
+// CPU side of a FaceMesh. Built on any thread, uploaded on the render thread.
+public final class FaceMeshData {
+    private final int[] faces;
+    private final int originX;
+    private final int originZ;
+
+    public FaceMeshData(int[] faces, int originX, int originZ) {
+        this.faces = faces;
+        this.originX = originX;
+        this.originZ = originZ;
+    }
+
+    public boolean isEmpty() {
+        return faces.length == 0;
+    }
+
+    // Must run on the GL thread
+    public FaceMesh upload() {
+        return new FaceMesh(faces, faces.length, originX, originZ);
+    }
+
+    public long getByteSize() {
+        return 4L * faces.length;
+    }
+}
@@ -0,0 +1,57 @@
+package edu.kosa.terrainproject.graphics;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// GL objects can only be deleted on the render thread, and only once no snapshot it may still draw refers to them.
+// Other threads queue chunks here; each entry waits for the first snapshot published after the release.
+public final class GlReleaseQueue {
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private volatile long publishedSequence;
+
+    private static final class Entry {
+        final Chunk chunk;
+        final long sequence; // First snapshot that no longer contains the chunk
+
+        Entry(Chunk chunk, long sequence) {
+            this.chunk = chunk;
+            this.sequence = sequence;
+        }
+    }
+
+    // Called by the publisher right after a snapshot becomes visible
+    public void published(long sequence) {
+        publishedSequence = sequence;
+    }
+
+    public void release(Chunk chunk) {
+        entries.add(new Entry(chunk, publishedSequence + 1));
+    }
+
+    // Render thread only. Chunks that came back into view meanwhile keep their meshes.
+    public int drain(RenderSnapshot current) {
+        int released = 0;
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.sequence > current.getSequence()) {
+                continue;
+            }
+            it.remove();
+            if (!current.contains(entry.chunk)) {
+                entry.chunk.cleanup();
+                released++;
+            }
+        }
+        return released;
+    }
+
+    // Render thread only, after the publisher has stopped
+    public void drainAll() {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            entry.chunk.cleanup();
+        }
+    }
+}
@@ -16,9 +16,11 @@ public class Mesh {
     private final int aboID; // Added for alpha VBO
     private final int eboID;
     private final int vertexCount;
+    private final long byteSize;
 
     public Mesh(float[] vertices, float[] texCoords, float[] normals, float[] alphas, int[] indices) {
         vertexCount = indices.length;
+        byteSize = 4L * (vertices.length + texCoords.length + normals.length + alphas.length + indices.length);
 
         // Create VAO
         vaoID = GL30.glGenVertexArrays();
@@ -77,6 +79,10 @@ public class Mesh {
         GL30.glBindVertexArray(0);
     }
 
+    public long getByteSize() {
+        return byteSize;
+    }
+
     public void cleanup() {
         GL30.glDeleteVertexArrays(vaoID);
         GL15.glDeleteBuffers(vboID);
@@ -0,0 +1,40 @@
+package edu.kosa.terrainproject.graphics;
+
+// CPU side of a Mesh. Built on any thread, uploaded on the render thread.
+public final class MeshData {
+    private final float[] vertices;
+    private final float[] texCoords;
+    private final float[] normals;
+    private final float[] alphas;
+    private final int[] indices;
+
+    public MeshData(float[] vertices, float[] texCoords, float[] normals, float[] alphas, int[] indices) {
+        this.vertices = vertices;
+        this.texCoords = texCoords;
+        this.normals = normals;
+        this.alphas = alphas;
+        this.indices = indices;
+    }
+
+    public boolean isEmpty() {
+        return indices.length == 0;
+    }
+
+    // Must run on the GL thread
+    public Mesh upload() {
+        return new Mesh(vertices, texCoords, normals, alphas, indices);
+    }
+
+    public int getVertexCount() {
+        return vertices.length / 3;
+    }
+
+    // Quads, two triangles each
+    public int getFaceCount() {
+        return indices.length / 6;
+    }
+
+    public long getByteSize() {
+        return 4L * (vertices.length + texCoords.length + normals.length + alphas.length + indices.length);
+    }
+}
@@ -0,0 +1,144 @@
+package edu.kosa.terrainproject.graphics;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Keeps the meshes of chunks that left the streaming square, so stepping back across a chunk border reuses them
+// instead of building and uploading them again. Parked chunks are freed once they are outside the unload distance,
+// or when the meshes of loaded and parked chunks together exceed the budget; the farthest go first, and among equally
+// far ones the chunk that has been out of view the longest.
+// Update thread only, the GL buffers themselves are freed through the release queue.
+public class MeshResidency {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MeshResidency.class);
+    private final GlReleaseQueue releaseQueue;
+    private int unloadDistance; // Chebyshev distance in chunks, beyond the load distance
+    private final LongObjectMap<Long> lastVisible = new LongObjectMap<>(); // Tick a loaded chunk was last drawn
+    private final LongObjectMap<Parked> parked = new LongObjectMap<>(); // Keyed by ChunkPos.pack
+    private long budgetBytes;
+    private long residentBytes;
+    private int evictions;
+    private boolean overBudgetLogged;
+
+    private static final class Parked {
+        final Chunk chunk;
+        final long lastVisible;
+
+        Parked(Chunk chunk, long lastVisible) {
+            this.chunk = chunk;
+            this.lastVisible = lastVisible;
+        }
+    }
+
+    public MeshResidency(GlReleaseQueue releaseQueue, long budgetBytes, int unloadDistance) {
+        this.releaseQueue = releaseQueue;
+        this.budgetBytes = budgetBytes;
+        this.unloadDistance = unloadDistance;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public void setUnloadDistance(int unloadDistance) {
+        this.unloadDistance = unloadDistance;
+    }
+
+    public void markVisible(List<Chunk> visible, long tick) {
+        for (Chunk chunk : visible) {
+            lastVisible.put(chunk.getPos().toLong(), tick);
+        }
+    }
+
+    // The chunk left the streaming square, its meshes stay until evict() decides otherwise
+    public void park(long key, Chunk chunk) {
+        Long seen = lastVisible.remove(key);
+        parked.put(key, new Parked(chunk, seen != null ? seen : 0));
+    }
+
+    // Returns the chunk to the streaming square, null if it was not parked
+    public Chunk reclaim(long key) {
+        Parked entry = parked.remove(key);
+        return entry != null ? entry.chunk : null;
+    }
+
+    public void evict(List<Chunk> loaded, int centerX, int centerZ) {
+        long loadedBytes = 0;
+        for (Chunk chunk : loaded) {
+            loadedBytes += chunk.getMeshByteSize();
+        }
+        parked.removeIf((key, entry) -> {
+            if (distance(entry.chunk, centerX, centerZ) > unloadDistance) {
+                release(entry.chunk);
+                return true;
+            }
+            return false;
+        });
+
+        long parkedBytes = 0;
+        List<Parked> candidates = new ArrayList<>(parked.size());
+        for (Parked entry : parked.values()) {
+            parkedBytes += entry.chunk.getMeshByteSize();
+            candidates.add(entry);
+        }
+        if (loadedBytes + parkedBytes > budgetBytes) {
+            candidates.sort(Comparator.<Parked>comparingInt(entry -> -distance(entry.chunk, centerX, centerZ))
+                    .thenComparingLong(entry -> entry.lastVisible));
+            for (Parked entry : candidates) {
+                if (loadedBytes + parkedBytes <= budgetBytes) {
+                    break;
+                }
+                parkedBytes -= entry.chunk.getMeshByteSize();
+                parked.remove(entry.chunk.getPos().toLong());
+                release(entry.chunk);
+            }
+        }
+        residentBytes = loadedBytes + parkedBytes;
+
+        // Loaded chunks are never evicted, they would only be rebuilt on the next tick
+        if (loadedBytes > budgetBytes && !overBudgetLogged) {
+            LOGGER.warn("Loaded chunk meshes alone use {} MB, above the {} MB budget", loadedBytes >> 20, budgetBytes >> 20);
+        }
+        overBudgetLogged = loadedBytes > budgetBytes;
+    }
+
+    // Frees every parked chunk, for changes that invalidate their meshes such as a mesh format switch
+    public void releaseAll() {
+        parked.forEach((key, entry) -> release(entry.chunk));
+        parked.clear();
+    }
+
+    // Forgets parked chunks without freeing them, when the world's configuration cache takes them over
+    public void clear() {
+        parked.clear();
+        lastVisible.clear();
+    }
+
+    public int getParkedCount() {
+        return parked.size();
+    }
+
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public int getEvictions() {
+        return evictions;
+    }
+
+    private void release(Chunk chunk) {
+        chunk.releaseMeshData(false);
+        chunk.releaseMeshData(true);
+        releaseQueue.release(chunk);
+        evictions++;
+    }
+
+    private static int distance(Chunk chunk, int centerX, int centerZ) {
+        return Math.max(Math.abs(chunk.getPos().getX() - centerX), Math.abs(chunk.getPos().getZ() - centerZ));
+    }
+}
@@ -0,0 +1,198 @@
+package edu.kosa.terrainproject.graphics;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Coarse software occlusion culling. Every chunk is solid below its occluder height, so that box is rasterized
+// into a small depth buffer, then each chunk's bounds are tested against it. Both sides are conservative:
+// occluders only cover pixels they cover completely and write their farthest depth, occludees use their nearest
+// depth over every pixel they touch, and anything crossing the near plane counts as visible.
+public class OcclusionCuller {
+    private static final float NEAR = 0.1f; // Camera near plane
+    private final int width;
+    private final int height;
+    private final float[] depth; // View depth known to be covered per pixel, infinity when nothing is
+    private final float[] m = new float[16]; // View-projection, column-major
+    private final float[] clip = new float[4 * 8]; // x, y, z, w per box corner
+    private final float[] screen = new float[3 * 8]; // x, y in pixels and view depth
+    private int frustumCulled;
+    private int occlusionCulled;
+
+    public OcclusionCuller(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.depth = new float[width * height];
+    }
+
+    // Returns the chunks that may be visible; occlusion can be skipped to keep only the frustum test
+    public List<Chunk> cull(List<Chunk> chunks, Matrix4f viewProjection, boolean occlusion) {
+        viewProjection.get(m);
+        frustumCulled = 0;
+        occlusionCulled = 0;
+        List<Chunk> inFrustum = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            if (chunk.getMaxY() < chunk.getMinY() || !projectBox(chunk, chunk.getMinY(), chunk.getMaxY() + 1)) {
+                frustumCulled++;
+            } else {
+                inFrustum.add(chunk);
+            }
+        }
+        if (!occlusion) {
+            return inFrustum;
+        }
+
+        Arrays.fill(depth, Float.POSITIVE_INFINITY);
+        for (Chunk chunk : inFrustum) {
+            int top = chunk.getOccluderHeight();
+            if (top > 0) {
+                rasterizeOccluder(chunk, top);
+            }
+        }
+
+        List<Chunk> visible = new ArrayList<>(inFrustum.size());
+        for (Chunk chunk : inFrustum) {
+            if (isVisible(chunk)) {
+                visible.add(chunk);
+            } else {
+                occlusionCulled++;
+            }
+        }
+        return visible;
+    }
+
+    public int getFrustumCulled() {
+        return frustumCulled;
+    }
+
+    public int getOcclusionCulled() {
+        return occlusionCulled;
+    }
+
+    // Transforms the chunk column between minY and maxY, false when it lies entirely outside one frustum plane
+    private boolean projectBox(Chunk chunk, int minY, int maxY) {
+        int size = chunk.getSize();
+        int x0 = chunk.getPos().getX() * size;
+        int z0 = chunk.getPos().getZ() * size;
+        int outside = 0x3F; // One bit per plane, cleared when some corner is inside it
+        for (int i = 0; i < 8; i++) {
+            float x = x0 + ((i & 1) != 0 ? size : 0);
+            float y = (i & 2) != 0 ? maxY : minY;
+            float z = z0 + ((i & 4) != 0 ? size : 0);
+            float cx = m[0] * x + m[4] * y + m[8] * z + m[12];
+            float cy = m[1] * x + m[5] * y + m[9] * z + m[13];
+            float cz = m[2] * x + m[6] * y + m[10] * z + m[14];
+            float cw = m[3] * x + m[7] * y + m[11] * z + m[15];
+            clip[i * 4] = cx;
+            clip[i * 4 + 1] = cy;
+            clip[i * 4 + 2] = cz;
+            clip[i * 4 + 3] = cw;
+            int planes = 0;
+            if (cx < -cw) planes |= 1;
+            if (cx > cw) planes |= 2;
+            if (cy < -cw) planes |= 4;
+            if (cy > cw) planes |= 8;
+            if (cz > cw) planes |= 16;
+            if (cw < NEAR) planes |= 32;
+            outside &= planes;
+        }
+        return outside == 0;
+    }
+
+    // Corners to pixels, false when one is too close to the camera to project
+    private boolean toScreen() {
+        for (int i = 0; i < 8; i++) {
+            float w = clip[i * 4 + 3];
+            if (w < NEAR) {
+                return false;
+            }
+            screen[i * 3] = (clip[i * 4] / w * 0.5f + 0.5f) * width;
+            screen[i * 3 + 1] = (clip[i * 4 + 1] / w * 0.5f + 0.5f) * height;
+            screen[i * 3 + 2] = w;
+        }
+        return true;
+    }
+
+    private void rasterizeOccluder(Chunk chunk, int top) {
+        if (!projectBox(chunk, 0, top) || !toScreen()) {
+            return; // Skipping an occluder is always safe
+        }
+        // Corner bits: 1 = +x, 2 = top, 4 = +z. The bottom face is never in front of anything.
+        quad(2, 3, 7, 6); // Top
+        quad(0, 2, 6, 4); // -X
+        quad(1, 3, 7, 5); // +X
+        quad(0, 1, 3, 2); // -Z
+        quad(4, 5, 7, 6); // +Z
+    }
+
+    private void quad(int a, int b, int c, int d) {
+        triangle(a, b, c);
+        triangle(a, c, d);
+    }
+
+    private void triangle(int a, int b, int c) {
+        float ax = screen[a * 3], ay = screen[a * 3 + 1];
+        float bx = screen[b * 3], by = screen[b * 3 + 1];
+        float cx = screen[c * 3], cy = screen[c * 3 + 1];
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (area == 0) {
+            return;
+        }
+        float sign = area > 0 ? 1 : -1; // Either winding, back faces are only farther copies of the front ones
+        float far = Math.max(screen[a * 3 + 2], Math.max(screen[b * 3 + 2], screen[c * 3 + 2]));
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))) - 1);
+        int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))) - 1);
+        for (int py = minY; py <= maxY; py++) {
+            for (int px = minX; px <= maxX; px++) {
+                // A pixel counts only if all four of its corners are inside, so partial coverage never occludes
+                if (inside(ax, ay, bx, by, cx, cy, sign, px, py) && inside(ax, ay, bx, by, cx, cy, sign, px + 1, py)
+                        && inside(ax, ay, bx, by, cx, cy, sign, px, py + 1) && inside(ax, ay, bx, by, cx, cy, sign, px + 1, py + 1)) {
+                    int i = py * width + px;
+                    if (far < depth[i]) {
+                        depth[i] = far;
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean inside(float ax, float ay, float bx, float by, float cx, float cy, float sign, float x, float y) {
+        return sign * ((bx - ax) * (y - ay) - (by - ay) * (x - ax)) >= 0
+                && sign * ((cx - bx) * (y - by) - (cy - by) * (x - bx)) >= 0
+                && sign * ((ax - cx) * (y - cy) - (ay - cy) * (x - cx)) >= 0;
+    }
+
+    private boolean isVisible(Chunk chunk) {
+        projectBox(chunk, chunk.getMinY(), chunk.getMaxY() + 1);
+        if (!toScreen()) {
+            return true;
+        }
+        float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, minY = Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float near = Float.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            minX = Math.min(minX, screen[i * 3]);
+            maxX = Math.max(maxX, screen[i * 3]);
+            minY = Math.min(minY, screen[i * 3 + 1]);
+            maxY = Math.max(maxY, screen[i * 3 + 1]);
+            near = Math.min(near, screen[i * 3 + 2]);
+        }
+        int x0 = Math.max(0, (int) Math.floor(minX));
+        int x1 = Math.min(width - 1, (int) Math.ceil(maxX) - 1);
+        int y0 = Math.max(0, (int) Math.floor(minY));
+        int y1 = Math.min(height - 1, (int) Math.ceil(maxY) - 1);
+        for (int py = y0; py <= y1; py++) {
+            for (int px = x0; px <= x1; px++) {
+                if (depth[py * width + px] >= near) {
+                    return true;
+                }
+            }
+        }
+        return x0 > x1 || y0 > y1; // Bounds smaller than a pixel row are left to the GPU
+    }
+}
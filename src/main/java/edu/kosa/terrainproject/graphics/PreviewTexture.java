@@ -0,0 +1,45 @@
+package edu.kosa.terrainproject.graphics;
+
+import edu.kosa.terrainproject.terrain.TerrainPreview;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.ByteBuffer;
+
+// GL texture showing the latest TerrainPreview pass. Render thread only.
+public class PreviewTexture {
+    private final int textureID;
+    private final ByteBuffer upload = BufferUtils.createByteBuffer(TerrainPreview.SIZE * TerrainPreview.SIZE * 4);
+    private TerrainPreview.Image uploaded;
+
+    public PreviewTexture() {
+        textureID = GL11.glGenTextures();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, TerrainPreview.SIZE, TerrainPreview.SIZE, 0,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, upload); // Black until the first pass arrives
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+    }
+
+    // Uploads the newest pass if it has not been shown yet
+    public void update(TerrainPreview preview) {
+        TerrainPreview.Image image = preview.getImage();
+        if (image == null || image == uploaded) {
+            return;
+        }
+        upload.clear();
+        upload.put(image.rgba).flip();
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, 0, 0, TerrainPreview.SIZE, TerrainPreview.SIZE,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, upload);
+        uploaded = image;
+    }
+
+    public int getTextureID() {
+        return textureID;
+    }
+
+    public void cleanup() {
+        GL11.glDeleteTextures(textureID);
+    }
+}
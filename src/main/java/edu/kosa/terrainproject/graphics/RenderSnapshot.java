@@ -0,0 +1,74 @@
+package edu.kosa.terrainproject.graphics;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Everything the render thread needs for one frame, published by the update thread and never modified afterwards.
+// Chunks are shared, but the render thread only touches their GL side.
+public final class RenderSnapshot {
+    private final long sequence;
+    private final List<Chunk> chunks;
+    private final List<Chunk> visibleChunks; // Subset that survived culling
+    private final Set<Chunk> chunkSet;
+    private final Matrix4f viewMatrix;
+    private final Matrix4f projectionMatrix;
+    private final Vector3f cameraPosition;
+    private final boolean packedFaces;
+    private final float fogRadius; // Terrain fades out here, just inside the streamed square
+
+    public RenderSnapshot(long sequence, List<Chunk> chunks, List<Chunk> visibleChunks, Camera camera, boolean packedFaces,
+                          float fogRadius) {
+        this.sequence = sequence;
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.visibleChunks = Collections.unmodifiableList(visibleChunks);
+        this.chunkSet = new HashSet<>(chunks);
+        this.viewMatrix = camera.getViewMatrix();
+        this.projectionMatrix = new Matrix4f(camera.getProjectionMatrix());
+        this.cameraPosition = new Vector3f(camera.getPosition());
+        this.packedFaces = packedFaces;
+        this.fogRadius = fogRadius;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    public List<Chunk> getVisibleChunks() {
+        return visibleChunks;
+    }
+
+    public boolean contains(Chunk chunk) {
+        return chunkSet.contains(chunk);
+    }
+
+    // The matrix getters hand out the snapshot's own instances, callers must not modify them
+    public Matrix4f getViewMatrix() {
+        return viewMatrix;
+    }
+
+    public Matrix4f getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    public Vector3f getCameraPosition() {
+        return cameraPosition;
+    }
+
+    public boolean isPackedFaces() {
+        return packedFaces;
+    }
+
+    public float getFogRadius() {
+        return fogRadius;
+    }
+}
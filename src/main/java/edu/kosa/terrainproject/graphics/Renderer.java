@@ -3,27 +3,56 @@ package edu.kosa.terrainproject.graphics;
 import edu.kosa.terrainproject.terrain.Chunk;
 import org.lwjgl.opengl.GL11;
 
-import java.util.List;
-
 public class Renderer {
+    private static final int MAX_UPLOADS_PER_FRAME = 16; // Spreads a burst of new chunks over several frames
     private final ShaderProgram shaderProgram;
+    private final ShaderProgram packedShaderProgram;
     private final int textureID;
+    private boolean lastPackedFaces;
 
-    public Renderer(ShaderProgram shaderProgram, int textureID) {
+    public Renderer(ShaderProgram shaderProgram, ShaderProgram packedShaderProgram, int textureID) {
         this.shaderProgram = shaderProgram;
+        this.packedShaderProgram = packedShaderProgram;
         this.textureID = textureID;
     }
 
-    public void render(Camera camera, List<Chunk> chunks, float radius) {
+    // Draws the FaceMesh buffers or the full quad meshes, whichever format the snapshot was built for
+    public void render(RenderSnapshot snapshot) {
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 
-        shaderProgram.use();
-        shaderProgram.setUniforms(camera, radius);
+        boolean packedFaces = snapshot.isPackedFaces();
+        if (packedFaces != lastPackedFaces) {
+            // The update thread forgot the old format, free its buffers too
+            for (Chunk chunk : snapshot.getChunks()) {
+                chunk.cleanupMesh(lastPackedFaces);
+            }
+            lastPackedFaces = packedFaces;
+        }
+
+        // Culled chunks upload too, so they are ready the moment they come into view
+        int uploads = 0;
+        for (Chunk chunk : snapshot.getChunks()) {
+            if (uploads >= MAX_UPLOADS_PER_FRAME) {
+                break;
+            }
+            if (chunk.uploadPendingMeshes()) {
+                uploads++;
+            }
+        }
+
+        ShaderProgram program = packedFaces ? packedShaderProgram : shaderProgram;
+        program.use();
+        program.setUniforms(snapshot.getViewMatrix(), snapshot.getProjectionMatrix(), snapshot.getCameraPosition(), snapshot.getFogRadius());
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureID);
 
         int renderedChunks = 0;
-        for (Chunk chunk : chunks) {
-            if (chunk.getMesh() != null) {
+        for (Chunk chunk : snapshot.getVisibleChunks()) {
+            if (packedFaces) {
+                if (chunk.getFaceMesh() != null) {
+                    chunk.getFaceMesh().render(program);
+                    renderedChunks++;
+                }
+            } else if (chunk.getMesh() != null) {
                 chunk.getMesh().render();
                 renderedChunks++;
             }
@@ -34,4 +63,4 @@ public class Renderer {
             System.err.println("OpenGL Error in render: " + error);
         }
     }
-}
\ No newline at end of file
+}
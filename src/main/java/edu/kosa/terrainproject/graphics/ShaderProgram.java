@@ -11,62 +11,113 @@ import java.nio.IntBuffer;
 public class ShaderProgram {
     private final int programID;
     private boolean useFallback = false;
+    private int chunkOriginLoc = -1;
+
+    private static final String VERTEX_SHADER_SOURCE = "#version 330 core\n" +
+            "layout(location = 0) in vec3 aPos;\n" +
+            "layout(location = 1) in vec2 aTexCoord;\n" +
+            "layout(location = 2) in vec3 aNormal;\n" +
+            "layout(location = 3) in float aAlpha;\n" + // Added alpha attribute
+            "uniform mat4 model;\n" +
+            "uniform mat4 view;\n" +
+            "uniform mat4 projection;\n" +
+            "out vec2 TexCoord;\n" +
+            "out vec3 WorldPos;\n" +
+            "out vec3 Normal;\n" +
+            "out float Alpha;\n" + // Pass alpha to fragment shader
+            "void main() {\n" +
+            "    vec4 worldPos = model * vec4(aPos, 1.0);\n" +
+            "    WorldPos = worldPos.xyz;\n" +
+            "    gl_Position = projection * view * worldPos;\n" +
+            "    TexCoord = aTexCoord;\n" +
+            "    Normal = mat3(model) * aNormal;\n" +
+            "    Alpha = aAlpha;\n" + // Assign alpha
+            "}\n";
+
+    private static final String FRAGMENT_SHADER_SOURCE = "#version 330 core\n" +
+            "in vec2 TexCoord;\n" +
+            "in vec3 WorldPos;\n" +
+            "in vec3 Normal;\n" +
+            "in float Alpha;\n" + // Receive alpha from vertex shader
+            "out vec4 FragColor;\n" +
+            "uniform sampler2D textureAtlas;\n" +
+            "uniform vec3 cameraPos;\n" +
+            "uniform float radius;\n" +
+            "uniform vec3 lightDir;\n" +
+            "uniform vec3 lightColor;\n" +
+            "void main() {\n" +
+            "    float dist = length(WorldPos.xz - cameraPos.xz);\n" +
+            "    float fade = smoothstep(radius - 5.0, radius, dist);\n" +
+            "    vec3 norm = normalize(Normal);\n" +
+            "    float diff = max(dot(norm, -lightDir), 0.2);\n" +
+            "    vec3 diffuse = diff * lightColor;\n" +
+            "    vec4 texColor = texture(textureAtlas, TexCoord);\n" +
+            "    vec4 terrainColor = vec4(texColor.rgb * diffuse, texColor.a * Alpha);\n" + // Multiply texture alpha with vertex alpha
+            "    vec4 clearColor = vec4(0.1, 0.1, 0.3, 1.0);\n" +
+            "    FragColor = mix(terrainColor, clearColor, clamp(fade, 0.0, 1.0));\n" +
+            "}\n";
+
+    private static final String FALLBACK_FRAGMENT_SOURCE = "#version 330 core\n" +
+            "in vec2 TexCoord;\n" +
+            "in float Alpha;\n" + // Receive alpha for fallback
+            "out vec4 FragColor;\n" +
+            "uniform sampler2D textureAtlas;\n" +
+            "void main() {\n" +
+            "    vec4 texColor = texture(textureAtlas, TexCoord);\n" +
+            "    FragColor = vec4(texColor.rgb, texColor.a * Alpha);\n" + // Apply alpha
+            "}\n";
+
+    // Expands one packed face per instance into a quad: bits 0-5 x, 6-11 z, 12-20 y, 21-23 face, 24-31 block type
+    private static final String PACKED_VERTEX_SHADER_SOURCE = "#version 330 core\n" +
+            "layout(location = 0) in uint aFace;\n" +
+            "uniform mat4 view;\n" +
+            "uniform mat4 projection;\n" +
+            "uniform vec2 chunkOrigin;\n" +
+            "out vec2 TexCoord;\n" +
+            "out vec3 WorldPos;\n" +
+            "out vec3 Normal;\n" +
+            "out float Alpha;\n" +
+            "const vec3 CORNERS[24] = vec3[](\n" +
+            "    vec3(1, 0, 0), vec3(1, 1, 0), vec3(1, 1, 1), vec3(1, 0, 1),\n" + // +X
+            "    vec3(0, 0, 1), vec3(0, 1, 1), vec3(0, 1, 0), vec3(0, 0, 0),\n" + // -X
+            "    vec3(0, 1, 1), vec3(1, 1, 1), vec3(1, 1, 0), vec3(0, 1, 0),\n" + // +Y
+            "    vec3(0, 0, 0), vec3(1, 0, 0), vec3(1, 0, 1), vec3(0, 0, 1),\n" + // -Y
+            "    vec3(0, 0, 1), vec3(1, 0, 1), vec3(1, 1, 1), vec3(0, 1, 1),\n" + // +Z
+            "    vec3(1, 0, 0), vec3(0, 0, 0), vec3(0, 1, 0), vec3(1, 1, 0));\n" + // -Z
+            "const vec3 NORMALS[6] = vec3[](vec3(1, 0, 0), vec3(-1, 0, 0), vec3(0, 1, 0),\n" +
+            "    vec3(0, -1, 0), vec3(0, 0, 1), vec3(0, 0, -1));\n" +
+            "const int QUAD[6] = int[](0, 1, 2, 0, 2, 3);\n" +
+            "void main() {\n" +
+            "    uint x = aFace & 63u;\n" +
+            "    uint z = (aFace >> 6u) & 63u;\n" +
+            "    uint y = (aFace >> 12u) & 511u;\n" +
+            "    int face = int((aFace >> 21u) & 7u);\n" +
+            "    uint type = aFace >> 24u;\n" +
+            "    int corner = QUAD[gl_VertexID];\n" +
+            "    vec3 pos = vec3(chunkOrigin.x + float(x), float(y), chunkOrigin.y + float(z)) + CORNERS[face * 4 + corner];\n" +
+            "    float uMin = 0.25;\n" + // Stone or grass sides/bottom
+            "    if (type == 1u && face == 2) uMin = 0.0;\n" + // Grass top
+            "    else if (type == 3u) uMin = 0.5;\n" + // Sand
+            "    else if (type == 4u) uMin = 0.75;\n" + // Water
+            "    TexCoord = vec2(corner < 2 ? uMin : uMin + 0.25, corner == 0 || corner == 3 ? 0.0 : 1.0);\n" +
+            "    WorldPos = pos;\n" +
+            "    Normal = NORMALS[face];\n" +
+            "    Alpha = type == 4u ? 0.5 : 1.0;\n" +
+            "    gl_Position = projection * view * vec4(pos, 1.0);\n" +
+            "}\n";
 
     public ShaderProgram() {
-        String vertexShaderSource = "#version 330 core\n" +
-                "layout(location = 0) in vec3 aPos;\n" +
-                "layout(location = 1) in vec2 aTexCoord;\n" +
-                "layout(location = 2) in vec3 aNormal;\n" +
-                "layout(location = 3) in float aAlpha;\n" + // Added alpha attribute
-                "uniform mat4 model;\n" +
-                "uniform mat4 view;\n" +
-                "uniform mat4 projection;\n" +
-                "out vec2 TexCoord;\n" +
-                "out vec3 WorldPos;\n" +
-                "out vec3 Normal;\n" +
-                "out float Alpha;\n" + // Pass alpha to fragment shader
-                "void main() {\n" +
-                "    vec4 worldPos = model * vec4(aPos, 1.0);\n" +
-                "    WorldPos = worldPos.xyz;\n" +
-                "    gl_Position = projection * view * worldPos;\n" +
-                "    TexCoord = aTexCoord;\n" +
-                "    Normal = mat3(model) * aNormal;\n" +
-                "    Alpha = aAlpha;\n" + // Assign alpha
-                "}\n";
-
-        String fragmentShaderSource = "#version 330 core\n" +
-                "in vec2 TexCoord;\n" +
-                "in vec3 WorldPos;\n" +
-                "in vec3 Normal;\n" +
-                "in float Alpha;\n" + // Receive alpha from vertex shader
-                "out vec4 FragColor;\n" +
-                "uniform sampler2D textureAtlas;\n" +
-                "uniform vec3 cameraPos;\n" +
-                "uniform float radius;\n" +
-                "uniform vec3 lightDir;\n" +
-                "uniform vec3 lightColor;\n" +
-                "void main() {\n" +
-                "    float dist = length(WorldPos.xz - cameraPos.xz);\n" +
-                "    float fade = smoothstep(radius - 5.0, radius, dist);\n" +
-                "    vec3 norm = normalize(Normal);\n" +
-                "    float diff = max(dot(norm, -lightDir), 0.2);\n" +
-                "    vec3 diffuse = diff * lightColor;\n" +
-                "    vec4 texColor = texture(textureAtlas, TexCoord);\n" +
-                "    vec4 terrainColor = vec4(texColor.rgb * diffuse, texColor.a * Alpha);\n" + // Multiply texture alpha with vertex alpha
-                "    vec4 clearColor = vec4(0.1, 0.1, 0.3, 1.0);\n" +
-                "    FragColor = mix(terrainColor, clearColor, clamp(fade, 0.0, 1.0));\n" +
-                "}\n";
-
-        String fallbackFragmentSource = "#version 330 core\n" +
-                "in vec2 TexCoord;\n" +
-                "in float Alpha;\n" + // Receive alpha for fallback
-                "out vec4 FragColor;\n" +
-                "uniform sampler2D textureAtlas;\n" +
-                "void main() {\n" +
-                "    vec4 texColor = texture(textureAtlas, TexCoord);\n" +
-                "    FragColor = vec4(texColor.rgb, texColor.a * Alpha);\n" + // Apply alpha
-                "}\n";
+        this(VERTEX_SHADER_SOURCE);
+    }
+
+    // Shader for FaceMesh buffers, shares the fragment stage with the default program
+    public static ShaderProgram forPackedFaces() {
+        ShaderProgram program = new ShaderProgram(PACKED_VERTEX_SHADER_SOURCE);
+        program.chunkOriginLoc = GL20.glGetUniformLocation(program.programID, "chunkOrigin");
+        return program;
+    }
 
+    private ShaderProgram(String vertexShaderSource) {
         programID = GL20.glCreateProgram();
         int vertexShader = GL20.glCreateShader(GL20.GL_VERTEX_SHADER);
         GL20.glShaderSource(vertexShader, vertexShaderSource);
@@ -76,13 +127,13 @@ public class ShaderProgram {
         }
 
         int fragmentShader = GL20.glCreateShader(GL20.GL_FRAGMENT_SHADER);
-        GL20.glShaderSource(fragmentShader, useFallback ? fallbackFragmentSource : fragmentShaderSource);
+        GL20.glShaderSource(fragmentShader, useFallback ? FALLBACK_FRAGMENT_SOURCE : FRAGMENT_SHADER_SOURCE);
         GL20.glCompileShader(fragmentShader);
         if (!checkShaderCompile(fragmentShader, "Fragment")) {
             useFallback = true;
             GL20.glDeleteShader(fragmentShader);
             fragmentShader = GL20.glCreateShader(GL20.GL_FRAGMENT_SHADER);
-            GL20.glShaderSource(fragmentShader, fallbackFragmentSource);
+            GL20.glShaderSource(fragmentShader, FALLBACK_FRAGMENT_SOURCE);
             GL20.glCompileShader(fragmentShader);
             checkShaderCompile(fragmentShader, "Fallback Fragment");
         }
@@ -103,15 +154,16 @@ public class ShaderProgram {
     }
 
     public void setUniforms(Camera camera, float radius) {
+        setUniforms(camera.getViewMatrix(), camera.getProjectionMatrix(), camera.getPosition(), radius);
+    }
+
+    public void setUniforms(Matrix4f view, Matrix4f projection, Vector3f cameraPos, float radius) {
         if (useFallback) {
             System.out.println("Using fallback shader (no uniforms set)");
             return;
         }
 
         Matrix4f model = new Matrix4f().identity();
-        Matrix4f view = camera.getViewMatrix();
-        Matrix4f projection = camera.getProjectionMatrix();
-        Vector3f cameraPos = camera.getPosition();
         Vector3f lightDir = new Vector3f(0.5f, -1f, 0.5f).normalize();
         Vector3f lightColor = new Vector3f(1f, 1f, 1f);
 
@@ -147,6 +199,10 @@ public class ShaderProgram {
         }
     }
 
+    public void setChunkOrigin(int x, int z) {
+        GL20.glUniform2f(chunkOriginLoc, x, z);
+    }
+
     public void cleanup() {
         GL20.glDeleteProgram(programID);
     }
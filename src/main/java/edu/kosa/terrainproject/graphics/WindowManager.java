@@ -33,6 +33,10 @@ public class WindowManager {
         return GLFW.glfwWindowShouldClose(window);
     }
 
+    public void requestClose() {
+        GLFW.glfwSetWindowShouldClose(window, true);
+    }
+
     public void update() {
         GLFW.glfwSwapBuffers(window);
         GLFW.glfwPollEvents();
@@ -3,13 +3,19 @@ package edu.kosa.terrainproject.input;
 import edu.kosa.terrainproject.graphics.Camera;
 import org.lwjgl.glfw.GLFW;
 
+// GLFW may only be queried on the render thread, so poll() samples keys and mouse there and processInput()
+// applies them to the camera on the update thread
 public class InputHandler {
     private final long window;
     private final Camera camera;
     private double lastX;
     private boolean firstMouse = true;
-    private final float visibilityRadius = 95f; // Fixed visibility radius
     private boolean cursorVisible = false;
+    private float pendingDeltaX; // Mouse movement not yet applied, guarded by this
+    private volatile boolean forward;
+    private volatile boolean backward;
+    private volatile boolean left;
+    private volatile boolean right;
 
     public InputHandler(long window, Camera camera) {
         this.window = window;
@@ -23,7 +29,7 @@ public class InputHandler {
                 }
                 float deltaX = (float) (xpos - lastX);
                 lastX = xpos;
-                camera.rotate(deltaX);
+                addMouseDelta(deltaX);
             }
         });
 
@@ -35,15 +41,24 @@ public class InputHandler {
             }
             float deltaX = (float) (xpos - lastX);
             lastX = xpos;
-            camera.rotate(deltaX);
+            addMouseDelta(deltaX);
         });
 
         GLFW.glfwSetInputMode(window, GLFW.GLFW_CURSOR, GLFW.GLFW_CURSOR_DISABLED);
     }
 
-    public void processInput(float deltaTime) {
-        float speed = 50f * deltaTime;
+    private synchronized void addMouseDelta(float deltaX) {
+        pendingDeltaX += deltaX;
+    }
+
+    private synchronized float takeMouseDelta() {
+        float deltaX = pendingDeltaX;
+        pendingDeltaX = 0;
+        return deltaX;
+    }
 
+    // Render thread, once per frame after polling events
+    public void poll() {
         if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_ENTER) == GLFW.GLFW_PRESS) {
             try {
                 Thread.sleep(200); // Debounce to prevent rapid toggling
@@ -56,24 +71,31 @@ public class InputHandler {
             firstMouse = true; // Reset mouse position
         }
 
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_D) == GLFW.GLFW_PRESS) {
+        right = GLFW.glfwGetKey(window, GLFW.GLFW_KEY_D) == GLFW.GLFW_PRESS;
+        left = GLFW.glfwGetKey(window, GLFW.GLFW_KEY_A) == GLFW.GLFW_PRESS;
+        backward = GLFW.glfwGetKey(window, GLFW.GLFW_KEY_S) == GLFW.GLFW_PRESS;
+        forward = GLFW.glfwGetKey(window, GLFW.GLFW_KEY_W) == GLFW.GLFW_PRESS;
+        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_ESCAPE) == GLFW.GLFW_PRESS) {
+            GLFW.glfwSetWindowShouldClose(window, true);
+        }
+    }
+
+    // Update thread, integrates the latest sampled input over its own tick length
+    public void processInput(float deltaTime) {
+        float speed = 50f * deltaTime;
+
+        camera.rotate(takeMouseDelta());
+        if (right) {
             camera.move(0f, speed); // Move right (lateral)
         }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_A) == GLFW.GLFW_PRESS) {
+        if (left) {
             camera.move(0f, -speed); // Move left (lateral)
         }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_S) == GLFW.GLFW_PRESS) {
+        if (backward) {
             camera.move(-speed, 0f); // Move backward
         }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_W) == GLFW.GLFW_PRESS) {
+        if (forward) {
             camera.move(speed, 0f); // Move forward
         }
-        if (GLFW.glfwGetKey(window, GLFW.GLFW_KEY_ESCAPE) == GLFW.GLFW_PRESS) {
-            GLFW.glfwSetWindowShouldClose(window, true);
-        }
-    }
-
-    public float getRadius() {
-        return visibilityRadius;
     }
-}
\ No newline at end of file
+}
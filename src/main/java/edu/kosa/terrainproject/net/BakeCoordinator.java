@@ -0,0 +1,379 @@
+package edu.kosa.terrainproject.net;
+
+import edu.kosa.terrainproject.terrain.HeightmapBaker;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Bakes a heightmap like HeightmapBaker, but spread over several worker JVMs so no single heap or garbage collector
+// limits the throughput. The region is cut into HeightmapBaker tiles and every worker starts with a contiguous share
+// of them in a deque of its own; a worker that runs dry steals from the far end of the fullest deque. Each worker
+// keeps a few tiles in flight over its pipes, and finished tiles are written straight into the two output files, which
+// use the HeightmapBaker layout. A worker that dies has its tiles queued again and is restarted a limited number of
+// times; a tile that fails MAX_ATTEMPTS times, or running out of workers, fails the bake.
+public class BakeCoordinator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BakeCoordinator.class);
+    private static final int MAX_ATTEMPTS = 3; // Per tile, a tile that keeps crashing workers is not retried forever
+    private static final int MAX_RESTARTS = 3; // Per worker slot
+    private static final String WORKER_MAIN = "edu.kosa.terrainproject.app.BakeWorkerMain";
+    private final int workerCount;
+    private final int threadsPerWorker;
+    private final List<String> jvmOptions;
+
+    // Everything below is per bake and guarded by this
+    private final List<Worker> workers = new ArrayList<>();
+    private TerrainSnapshot config;
+    private FileChannel heightsOut;
+    private FileChannel maskOut;
+    private int width;
+    private int maskStride;
+    private int originX;
+    private int originZ;
+    private int remaining;
+    private long waterColumns;
+    private int steals;
+    private int retries;
+    private int restarts;
+    private IOException failure;
+
+    private static final class Tile {
+        final int id;
+        final int x; // Offset in the region, a multiple of the tile size
+        final int z;
+        final int width;
+        final int depth;
+        int attempts;
+
+        Tile(int id, int x, int z, int width, int depth) {
+            this.id = id;
+            this.x = x;
+            this.z = z;
+            this.width = width;
+            this.depth = depth;
+        }
+    }
+
+    // One worker process; a restart replaces it with a new Worker that takes over the queue
+    private static final class Worker {
+        final int slot;
+        final int restarts;
+        final ArrayDeque<Tile> queue;
+        final Map<Integer, Tile> inFlight = new HashMap<>();
+        Process process;
+        DataOutputStream out;
+        boolean alive = true;
+
+        Worker(int slot, int restarts, ArrayDeque<Tile> queue) {
+            this.slot = slot;
+            this.restarts = restarts;
+            this.queue = queue;
+        }
+    }
+
+    // jvmOptions are passed to every worker JVM, heap and GC settings for example
+    public BakeCoordinator(int workerCount, int threadsPerWorker, List<String> jvmOptions) {
+        this.workerCount = workerCount;
+        this.threadsPerWorker = threadsPerWorker;
+        this.jvmOptions = List.copyOf(jvmOptions);
+    }
+
+    public synchronized HeightmapBaker.Report bake(TerrainSnapshot config, int originX, int originZ, int width, int depth,
+                                                   Path heightsFile, Path waterMaskFile) throws IOException {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Heightmap size must be positive, got " + width + "x" + depth);
+        }
+        this.config = config;
+        this.originX = originX;
+        this.originZ = originZ;
+        this.width = width;
+        this.maskStride = (width + 7) / 8;
+        waterColumns = 0;
+        steals = 0;
+        retries = 0;
+        restarts = 0;
+        failure = null;
+        long start = System.nanoTime();
+
+        List<Tile> tiles = new ArrayList<>();
+        int size = HeightmapBaker.TILE_SIZE;
+        for (int z = 0; z < depth; z += size) {
+            for (int x = 0; x < width; x += size) {
+                tiles.add(new Tile(tiles.size(), x, z, Math.min(size, width - x), Math.min(size, depth - z)));
+            }
+        }
+        remaining = tiles.size();
+
+        try (FileChannel heights = FileChannel.open(heightsFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel mask = FileChannel.open(waterMaskFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            heightsOut = heights;
+            maskOut = mask;
+            // Full length up front, tiles arrive in any order
+            heights.write(ByteBuffer.allocate(1), (long) width * depth * 2 - 1);
+            mask.write(ByteBuffer.allocate(1), (long) maskStride * depth - 1);
+
+            // Contiguous shares, so a worker's tiles are neighbours until stealing starts
+            for (int slot = 0; slot < workerCount; slot++) {
+                ArrayDeque<Tile> queue = new ArrayDeque<>(tiles.subList(tiles.size() * slot / workerCount,
+                        tiles.size() * (slot + 1) / workerCount));
+                workers.add(start(slot, 0, queue));
+            }
+            workers.forEach(this::dispatch);
+
+            long nextReport = System.nanoTime() + 2_000_000_000L;
+            while (remaining > 0 && failure == null) {
+                try {
+                    wait(2000); // Woken by every finished tile as well
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Bake interrupted", e);
+                }
+                if (System.nanoTime() < nextReport) {
+                    continue;
+                }
+                nextReport += 2_000_000_000L;
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long columns = (long) width * depth * (tiles.size() - remaining) / tiles.size();
+                LOGGER.info("Baked {}/{} tiles, {} columns/s, {} steals, {} retries", tiles.size() - remaining,
+                        tiles.size(), String.format("%.0f", columns / seconds), steals, retries);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            stopWorkers();
+        }
+
+        HeightmapBaker.Report report = new HeightmapBaker.Report((long) width * depth, waterColumns,
+                (System.nanoTime() - start) / 1e9);
+        LOGGER.info("Baked {}x{} heightmap on {} workers in {} s ({} columns/s, {} water columns, {} steals, {} retries, {} restarts)",
+                width, depth, workerCount, String.format("%.2f", report.seconds),
+                String.format("%.0f", report.columnsPerSecond()), report.waterColumns, steals, retries, restarts);
+        return report;
+    }
+
+    private Worker start(int slot, int restartCount, ArrayDeque<Tile> queue) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WORKER_MAIN);
+        command.add(String.valueOf(threadsPerWorker));
+        Worker worker = new Worker(slot, restartCount, queue);
+        worker.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        worker.out = new DataOutputStream(new BufferedOutputStream(worker.process.getOutputStream()));
+        ChunkProtocol.writeConfig(worker.out, config);
+        worker.out.flush();
+        Thread reader = new Thread(() -> readResults(worker), "bake-coordinator-" + slot);
+        reader.setDaemon(true);
+        reader.start();
+        return worker;
+    }
+
+    // Tops the worker up to its window, from its own queue first and then by stealing
+    private void dispatch(Worker worker) {
+        int window = threadsPerWorker * 2; // Enough that a worker never waits for its next tile
+        while (worker.alive && worker.inFlight.size() < window) {
+            Tile tile = worker.queue.pollFirst();
+            if (tile == null) {
+                tile = steal(worker);
+            }
+            if (tile == null) {
+                return;
+            }
+            worker.inFlight.put(tile.id, tile);
+            try {
+                worker.out.writeByte(BakeWorker.TILE);
+                worker.out.writeInt(tile.id);
+                worker.out.writeInt(originX + tile.x);
+                worker.out.writeInt(originZ + tile.z);
+                worker.out.writeInt(tile.width);
+                worker.out.writeInt(tile.depth);
+            } catch (IOException e) {
+                break; // The reader sees the worker die and requeues its tiles
+            }
+        }
+        try {
+            worker.out.flush();
+        } catch (IOException e) {
+            LOGGER.debug("Worker {} pipe closed", worker.slot);
+        }
+    }
+
+    // The far end of the fullest queue, the tiles its owner would have reached last
+    private Tile steal(Worker thief) {
+        Worker victim = null;
+        for (Worker worker : workers) {
+            if (worker != thief && !worker.queue.isEmpty() && (victim == null || worker.queue.size() > victim.queue.size())) {
+                victim = worker;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        steals++;
+        return victim.queue.pollLast();
+    }
+
+    private void readResults(Worker worker) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(worker.process.getInputStream()))) {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                if (type == BakeWorker.TILE_DONE) {
+                    long water = in.readLong();
+                    Tile tile;
+                    synchronized (this) {
+                        tile = worker.inFlight.get(id);
+                    }
+                    // Lengths are checked before anything is allocated, a garbled stream must not reach new byte[]
+                    int size = HeightmapBaker.TILE_SIZE;
+                    byte[] heights = readArray(in, tile != null ? tile.width * tile.depth * 2 : -1, size * size * 2);
+                    byte[] mask = readArray(in, tile != null ? (tile.width + 7) / 8 * tile.depth : -1, size / 8 * size);
+                    if (tile == null) {
+                        continue;
+                    }
+                    try {
+                        write(tile, heights, mask); // Positional writes, safe from every reader at once
+                    } catch (IOException e) {
+                        synchronized (this) {
+                            failure = e; // The output is at fault, not the worker
+                            notifyAll();
+                        }
+                        return;
+                    }
+                    synchronized (this) {
+                        worker.inFlight.remove(id);
+                        waterColumns += water;
+                        remaining--;
+                        dispatch(worker);
+                        notifyAll();
+                    }
+                } else if (type == BakeWorker.TILE_FAILED) {
+                    String message = in.readUTF();
+                    synchronized (this) {
+                        Tile tile = worker.inFlight.remove(id);
+                        if (tile != null) {
+                            LOGGER.warn("Worker {} failed tile {}: {}", worker.slot, id, message);
+                            requeue(worker, tile);
+                            dispatch(worker);
+                        }
+                        notifyAll();
+                    }
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Any failure ends this reader, so the worker is treated as dead and its tiles go to the others
+            synchronized (this) {
+                if (worker.alive && remaining > 0) {
+                    LOGGER.warn("Worker {} died with {} tiles in flight: {}", worker.slot, worker.inFlight.size(), e.toString());
+                    crashed(worker);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // A length prefixed array of exactly expected bytes, or of at most limit bytes skipped when expected is -1
+    private static byte[] readArray(DataInputStream in, int expected, int limit) throws IOException {
+        int length = in.readInt();
+        if (expected < 0 && length >= 0 && length <= limit) {
+            in.skipNBytes(length); // A tile that was already requeued elsewhere
+            return null;
+        }
+        if (length != expected) {
+            throw new IOException("Expected " + (expected < 0 ? "at most " + limit : String.valueOf(expected))
+                    + " bytes, worker sent " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    private void write(Tile tile, byte[] heights, byte[] mask) throws IOException {
+        int tileMaskStride = (tile.width + 7) / 8;
+        for (int row = 0; row < tile.depth; row++) {
+            heightsOut.write(ByteBuffer.wrap(heights, row * tile.width * 2, tile.width * 2),
+                    ((long) (tile.z + row) * width + tile.x) * 2);
+            maskOut.write(ByteBuffer.wrap(mask, row * tileMaskStride, tileMaskStride),
+                    (long) (tile.z + row) * maskStride + tile.x / 8);
+        }
+    }
+
+    private void requeue(Worker worker, Tile tile) {
+        tile.attempts++;
+        retries++;
+        if (tile.attempts >= MAX_ATTEMPTS) {
+            failure = new IOException("Tile at (" + (originX + tile.x) + ", " + (originZ + tile.z) + ") failed "
+                    + tile.attempts + " times");
+            return;
+        }
+        worker.queue.addFirst(tile);
+    }
+
+    private void crashed(Worker worker) {
+        worker.alive = false;
+        worker.process.destroyForcibly();
+        for (Tile tile : worker.inFlight.values()) {
+            requeue(worker, tile);
+        }
+        worker.inFlight.clear();
+        if (failure == null && worker.restarts < MAX_RESTARTS) {
+            try {
+                Worker replacement = start(worker.slot, worker.restarts + 1, worker.queue);
+                workers.set(workers.indexOf(worker), replacement);
+                restarts++;
+            } catch (IOException e) {
+                LOGGER.error("Could not restart worker {}", worker.slot, e);
+            }
+        }
+        // The requeued tiles go to whoever has room, a dead slot's queue is left to the thieves
+        workers.forEach(this::dispatch);
+        if (failure == null && workers.stream().noneMatch(w -> w.alive)) {
+            failure = new IOException("All bake workers died");
+        }
+    }
+
+    private void stopWorkers() {
+        for (Worker worker : workers) {
+            worker.alive = false;
+            try {
+                worker.out.close(); // The worker exits once its input ends
+            } catch (IOException e) {
+                LOGGER.debug("Worker {} pipe already closed", worker.slot);
+            }
+        }
+        for (Worker worker : workers) {
+            try {
+                if (!worker.process.waitFor(5, TimeUnit.SECONDS)) {
+                    worker.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                worker.process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+    }
+}
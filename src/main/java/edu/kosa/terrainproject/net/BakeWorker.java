@@ -0,0 +1,116 @@
+package edu.kosa.terrainproject.net;
+
+import edu.kosa.terrainproject.terrain.HeightFunction;
+import edu.kosa.terrainproject.terrain.HeightmapBaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The worker side of BakeCoordinator, run in a JVM of its own and spoken to over its standard streams.
+//   coordinator: CONFIG      as in ChunkProtocol, applies to every later TILE
+//                TILE        int id, int worldX, int worldZ, int width, int depth
+//   worker:      TILE_DONE   int id, long waterColumns, int length, heights (u16 little-endian, row-major by z),
+//                            int length, water mask (one bit per column, LSB first, rows padded to a byte)
+//                TILE_FAILED int id, UTF message
+// Tiles are baked on a pool of their own and answered in completion order. The worker exits when its input closes.
+public final class BakeWorker {
+    static final byte TILE = 16;
+    static final byte TILE_DONE = 17;
+    static final byte TILE_FAILED = 18;
+    private static final Logger LOGGER = LoggerFactory.getLogger(BakeWorker.class);
+
+    private BakeWorker() {
+    }
+
+    public static void serve(InputStream input, OutputStream output, int threads) throws IOException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bake-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        HeightFunction heightFunction = null;
+        int baked = 0;
+        try {
+            while (true) {
+                byte type = in.readByte();
+                if (type == ChunkProtocol.CONFIG) {
+                    heightFunction = HeightFunction.compile(ChunkProtocol.readConfig(in).snapshot());
+                } else if (type == TILE) {
+                    int id = in.readInt();
+                    int worldX = in.readInt();
+                    int worldZ = in.readInt();
+                    int width = in.readInt();
+                    int depth = in.readInt();
+                    HeightFunction target = heightFunction;
+                    pool.execute(() -> bake(out, target, id, worldX, worldZ, width, depth));
+                    baked++;
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.info("Coordinator closed the connection after {} tiles", baked);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void bake(DataOutputStream out, HeightFunction heightFunction, int id, int worldX, int worldZ,
+                             int width, int depth) {
+        try {
+            if (heightFunction == null) {
+                fail(out, id, "No configuration sent");
+                return;
+            }
+            int maskStride = (width + 7) / 8;
+            ByteBuffer heights = ByteBuffer.allocate(width * depth * 2).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer mask = ByteBuffer.allocate(maskStride * depth);
+            long waterColumns;
+            try {
+                waterColumns = HeightmapBaker.bakeTile(heightFunction, worldX, worldZ, width, depth,
+                        heights, 0, width * 2, mask, 0, maskStride);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to bake tile at ({}, {})", worldX, worldZ, e);
+                fail(out, id, e.toString());
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(TILE_DONE);
+                out.writeInt(id);
+                out.writeLong(waterColumns);
+                out.writeInt(heights.capacity());
+                out.write(heights.array());
+                out.writeInt(mask.capacity());
+                out.write(mask.array());
+                out.flush();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Dropped tile {}, coordinator gone", id);
+        }
+    }
+
+    private static void fail(DataOutputStream out, int id, String message) throws IOException {
+        synchronized (out) {
+            out.writeByte(TILE_FAILED);
+            out.writeInt(id);
+            out.writeUTF(message);
+            out.flush();
+        }
+    }
+}
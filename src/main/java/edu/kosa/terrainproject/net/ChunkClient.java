@@ -0,0 +1,121 @@
+package edu.kosa.terrainproject.net;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.terrain.ChunkPos;
+import edu.kosa.terrainproject.terrain.ChunkSource;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// ChunkSource backed by a ChunkServer. Every load() is written to the one connection straight away and completes
+// when its response arrives, so any number of requests can be in flight at once.
+public class ChunkClient implements ChunkSource {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkClient.class);
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Map<Integer, CompletableFuture<Chunk>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private TerrainSnapshot sentConfig; // Guarded by out
+    private volatile IOException failure;
+
+    public ChunkClient(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread reader = new Thread(this::readResponses, "chunk-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+        LOGGER.info("Connected to chunk server at {}:{}", host, port);
+    }
+
+    @Override
+    public CompletableFuture<Chunk> load(ChunkPos pos, TerrainSnapshot config) {
+        CompletableFuture<Chunk> future = new CompletableFuture<>();
+        if (failure != null) {
+            future.completeExceptionally(failure);
+            return future;
+        }
+        int id = nextId.incrementAndGet();
+        pending.put(id, future);
+        IOException failed = failure;
+        if (failed != null) {
+            // The reader failed after the first check and may have drained pending before the put
+            pending.remove(id);
+            future.completeExceptionally(failed);
+            return future;
+        }
+        try {
+            synchronized (out) {
+                if (!config.equals(sentConfig)) {
+                    ChunkProtocol.writeConfig(out, config);
+                    sentConfig = config;
+                }
+                ChunkProtocol.writeRequest(out, id, pos);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                byte type = in.readByte();
+                int id = in.readInt();
+                if (type == ChunkProtocol.CHUNK) {
+                    Chunk chunk = ChunkProtocol.readChunk(in);
+                    CompletableFuture<Chunk> future = pending.remove(id);
+                    if (future != null) {
+                        future.complete(chunk);
+                    }
+                } else if (type == ChunkProtocol.ERROR) {
+                    String message = in.readUTF();
+                    CompletableFuture<Chunk> future = pending.remove(id);
+                    if (future != null) {
+                        future.completeExceptionally(new IOException("Server error: " + message));
+                    }
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!socket.isClosed()) {
+                LOGGER.error("Lost connection to chunk server", e);
+            }
+            IOException error = e instanceof IOException io ? io : new IOException("Malformed response from chunk server", e);
+            failure = error; // Set before draining, a load() that misses the drain sees it after its put
+            pending.values().forEach(future -> future.completeExceptionally(error));
+            pending.clear();
+            close(); // The stream is out of step, nothing more can be read from it
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close chunk server connection", e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package edu.kosa.terrainproject.net;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.terrain.ChunkPos;
+import edu.kosa.terrainproject.terrain.ChunkSection;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Wire format shared by ChunkServer and ChunkClient, all big-endian through Data streams.
+//   client: CONFIG  terrain settings, applies to every later REQUEST on the connection
+//           REQUEST int id, int chunkX, int chunkZ
+//   server: CHUNK   int id, int chunkX, int chunkZ, int minY, int maxY, int occluderHeight, int size, int sectionCount,
+//                   int length, length bytes of deflated sections (one tag byte each: air, uniform + type, dense + blocks)
+//           ERROR   int id, UTF message
+// Requests are pipelined, responses come back in completion order and are matched by id.
+public final class ChunkProtocol {
+    public static final int DEFAULT_PORT = 25590;
+    public static final byte CONFIG = 1;
+    public static final byte REQUEST = 2;
+    public static final byte CHUNK = 3;
+    public static final byte ERROR = 4;
+    private static final byte SECTION_AIR = 0;
+    private static final byte SECTION_UNIFORM = 1;
+    private static final byte SECTION_DENSE = 2;
+
+    private ChunkProtocol() {
+    }
+
+    // Only the editable settings travel, everything else is a TerrainConfig constant
+    public static void writeConfig(DataOutputStream out, TerrainSnapshot config) throws IOException {
+        out.writeByte(CONFIG);
+        out.writeLong(config.seed);
+        out.writeFloat(config.scale);
+        out.writeInt(config.octaves);
+        out.writeFloat(config.persistence);
+        out.writeFloat(config.lacunarity);
+        out.writeFloat(config.heightScale);
+        out.writeFloat(config.baseHeight);
+        out.writeInt(config.sandHeightThreshold);
+        out.writeUTF(config.noiseType);
+        out.writeBoolean(config.erosion);
+        out.writeInt(config.chunkSize);
+    }
+
+    // Reads the body of a CONFIG message, the type byte is already consumed
+    public static TerrainConfig readConfig(DataInputStream in) throws IOException {
+        TerrainConfig config = new TerrainConfig(in.readLong());
+        config.scale = in.readFloat();
+        config.octaves = in.readInt();
+        config.persistence = in.readFloat();
+        config.lacunarity = in.readFloat();
+        config.heightScale = in.readFloat();
+        config.baseHeight = in.readFloat();
+        config.sandHeightThreshold = in.readInt();
+        config.noiseType = in.readUTF();
+        config.erosion = in.readBoolean();
+        config.chunkSize = in.readInt();
+        return config;
+    }
+
+    public static void writeRequest(DataOutputStream out, int id, ChunkPos pos) throws IOException {
+        out.writeByte(REQUEST);
+        out.writeInt(id);
+        out.writeInt(pos.getX());
+        out.writeInt(pos.getZ());
+    }
+
+    // Compresses the chunk before taking the stream, so the caller can hold its write lock only for the copy
+    public static byte[] encodeChunk(int id, Chunk chunk) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream sections = new DataOutputStream(raw);
+        byte[] blocks = new byte[ChunkSection.volume(chunk.getSize())];
+        for (int i = 0; i < chunk.getSectionCount(); i++) {
+            ChunkSection section = chunk.getSection(i);
+            if (section == null) {
+                sections.writeByte(SECTION_AIR);
+            } else if (section.isUniform()) {
+                sections.writeByte(SECTION_UNIFORM);
+                sections.writeByte(section.getBlock(0, 0, 0));
+            } else {
+                sections.writeByte(SECTION_DENSE);
+                section.copyBlocks(blocks);
+                sections.write(blocks);
+            }
+        }
+        byte[] compressed = deflate(raw.toByteArray());
+
+        ByteArrayOutputStream message = new ByteArrayOutputStream(compressed.length + 40);
+        DataOutputStream out = new DataOutputStream(message);
+        out.writeByte(CHUNK);
+        out.writeInt(id);
+        out.writeInt(chunk.getPos().getX());
+        out.writeInt(chunk.getPos().getZ());
+        out.writeInt(chunk.getMinY());
+        out.writeInt(chunk.getMaxY());
+        out.writeInt(chunk.getOccluderHeight());
+        out.writeInt(chunk.getSize());
+        out.writeInt(chunk.getSectionCount());
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        return message.toByteArray();
+    }
+
+    // Reads a CHUNK message after its type byte and id
+    public static Chunk readChunk(DataInputStream in) throws IOException {
+        ChunkPos pos = new ChunkPos(in.readInt(), in.readInt());
+        int minY = in.readInt();
+        int maxY = in.readInt();
+        int occluderHeight = in.readInt();
+        int size = in.readInt();
+        if (size <= 0 || size > Chunk.MAX_SIZE) {
+            throw new IOException("Invalid chunk size " + size);
+        }
+        int sectionCount = in.readInt();
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+
+        byte[] raw = inflate(compressed, sectionCount * (1 + ChunkSection.volume(size)));
+        ChunkSection[] sections = new ChunkSection[sectionCount];
+        int offset = 0;
+        for (int i = 0; i < sectionCount; i++) {
+            byte tag = raw[offset++];
+            if (tag == SECTION_UNIFORM) {
+                sections[i] = ChunkSection.uniform(raw[offset++]);
+            } else if (tag == SECTION_DENSE) {
+                byte[] blocks = ChunkSection.newBuffer(size);
+                System.arraycopy(raw, offset, blocks, 0, blocks.length);
+                offset += blocks.length;
+                sections[i] = ChunkSection.of(size, blocks);
+            } else if (tag != SECTION_AIR) {
+                throw new IOException("Unknown section tag " + tag);
+            }
+        }
+        return new Chunk(pos, size, sections, minY, maxY, occluderHeight);
+    }
+
+    public static byte[] encodeError(int id, String message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ERROR);
+        out.writeInt(id);
+        out.writeUTF(message == null ? "" : message);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 8));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int maxLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[maxLength];
+            int length = 0;
+            while (!inflater.finished()) {
+                int read = inflater.inflate(out, length, out.length - length);
+                if (read == 0 && (inflater.needsInput() || length == out.length)) {
+                    throw new IOException("Truncated or oversized chunk data");
+                }
+                length += read;
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
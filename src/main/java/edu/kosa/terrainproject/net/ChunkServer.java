@@ -0,0 +1,163 @@
+package edu.kosa.terrainproject.net;
+
+import edu.kosa.terrainproject.terrain.Chunk;
+import edu.kosa.terrainproject.terrain.TerrainConfig;
+import edu.kosa.terrainproject.terrain.TerrainSnapshot;
+import edu.kosa.terrainproject.terrain.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generates chunks for any number of local viewers and tools. Each configuration gets one World shared by all
+// connections using it, so a chunk is generated once no matter how many clients ask for it. Requests run on a
+// shared pool and are answered as soon as they finish, so one connection can keep many in flight.
+public class ChunkServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkServer.class);
+    private static final int MAX_WORLDS = 4; // Configurations kept generated, least recently used goes first
+    private final ServerSocket serverSocket;
+    private final ExecutorService generators;
+    private final LinkedHashMap<TerrainSnapshot, World> worlds = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicInteger servedChunks = new AtomicInteger();
+    private volatile boolean running = true;
+
+    // Binds to the loopback interface only, the protocol has no authentication
+    public ChunkServer(int port, int threads) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.generators = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "chunk-generator-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getServedChunks() {
+        return servedChunks.get();
+    }
+
+    // Accepts connections until close(), each one gets a reader thread
+    public void serve() {
+        LOGGER.info("Chunk server listening on port {}", getPort());
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread reader = new Thread(() -> handle(socket), "chunk-connection-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.error("Accept failed", e);
+                }
+            }
+        }
+    }
+
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close server socket", e);
+        }
+        generators.shutdownNow();
+    }
+
+    private synchronized World worldFor(TerrainConfig config) {
+        TerrainSnapshot snapshot = config.snapshot();
+        World world = worlds.get(snapshot);
+        if (world == null) {
+            world = new World(config);
+            worlds.put(snapshot, world);
+            Iterator<Map.Entry<TerrainSnapshot, World>> it = worlds.entrySet().iterator();
+            while (worlds.size() > MAX_WORLDS) {
+                it.next();
+                it.remove(); // No GL here, the chunks are simply dropped
+            }
+        }
+        return world;
+    }
+
+    private void handle(Socket socket) {
+        LOGGER.info("Client connected from {}", socket.getRemoteSocketAddress());
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            World world = null;
+            String configError = "No configuration sent"; // Reply to requests while there is no world
+            while (running) {
+                byte type = in.readByte();
+                if (type == ChunkProtocol.CONFIG) {
+                    TerrainConfig config = ChunkProtocol.readConfig(in);
+                    try {
+                        world = worldFor(config);
+                    } catch (RuntimeException e) {
+                        // The configuration message has no id to answer, every request until the next one fails instead
+                        LOGGER.warn("Rejected configuration from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+                        world = null;
+                        configError = "Invalid configuration: " + e.getMessage();
+                    }
+                } else if (type == ChunkProtocol.REQUEST) {
+                    int id = in.readInt();
+                    int chunkX = in.readInt();
+                    int chunkZ = in.readInt();
+                    if (world == null) {
+                        send(out, ChunkProtocol.encodeError(id, configError));
+                        continue;
+                    }
+                    World target = world;
+                    generators.execute(() -> generate(out, target, id, chunkX, chunkZ));
+                } else {
+                    throw new IOException("Unknown message type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.info("Client {} disconnected", socket.getRemoteSocketAddress());
+        } catch (IOException e) {
+            LOGGER.warn("Connection to {} failed", socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    private void generate(DataOutputStream out, World world, int id, int chunkX, int chunkZ) {
+        try {
+            byte[] message;
+            try {
+                Chunk chunk = world.getChunk(chunkX, chunkZ);
+                message = ChunkProtocol.encodeChunk(id, chunk);
+                servedChunks.incrementAndGet();
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to generate chunk ({}, {})", chunkX, chunkZ, e);
+                message = ChunkProtocol.encodeError(id, e.toString());
+            }
+            send(out, message);
+        } catch (IOException e) {
+            LOGGER.debug("Dropped response {}, connection closed", id);
+        }
+    }
+
+    private static void send(DataOutputStream out, byte[] message) throws IOException {
+        synchronized (out) {
+            out.write(message);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.kosa.terrainproject.noise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// The same lattice, gradients and fade curve as PerlinNoiseGenerator, evaluated in float. Only the scaling and the
+// split into lattice cell and fraction stay in double: world coordinates reach the tens of thousands, where a float
+// fraction would keep just a few bits. The permutation table is copied into a flat doubled array so no index needs
+// masking, and gradients come from two flat component arrays.
+// Results stay within MAX_ERROR of PerlinNoiseGenerator for the same seed and scale. On HotSpot's scalar code float
+// is not faster than double, NoiseKernelBenchmark compares the two on the machine at hand.
+public final class FastPerlinNoiseGenerator implements NoiseGenerator {
+    public static final double MAX_ERROR = 1e-5;
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastPerlinNoiseGenerator.class);
+    // GradientTable order: axis gradients first, then the diagonals
+    private static final float[] GRADIENT_X = {1, -1, 0, 0, 1, -1, 1, -1};
+    private static final float[] GRADIENT_Y = {0, 0, 1, -1, 1, 1, -1, -1};
+    private final int[] permutation = new int[512];
+    private final double scale;
+
+    public FastPerlinNoiseGenerator(long seed, double scale) {
+        PermutationTable table = new PermutationTable(seed);
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = table.get(i);
+        }
+        this.scale = scale;
+        LOGGER.debug("Initialized FastPerlinNoiseGenerator with seed: {}, scale: {}", seed, scale);
+    }
+
+    @Override
+    public double noise(double x, double y) {
+        x *= scale;
+        y *= scale;
+
+        int cellX = PerlinNoiseGenerator.fastFloor(x);
+        int cellY = PerlinNoiseGenerator.fastFloor(y);
+        float xf = (float) (x - cellX);
+        float yf = (float) (y - cellY);
+        int xi = cellX & 255;
+        int yi = cellY & 255;
+
+        float u = xf * xf * xf * (xf * (xf * 6 - 15) + 10);
+        float v = yf * yf * yf * (yf * (yf * 6 - 15) + 10);
+
+        int a = permutation[xi] + yi;
+        int b = permutation[xi + 1] + yi;
+        float g00 = dot(permutation[a], xf, yf);
+        float g10 = dot(permutation[b], xf - 1, yf);
+        float g01 = dot(permutation[a + 1], xf, yf - 1);
+        float g11 = dot(permutation[b + 1], xf - 1, yf - 1);
+
+        float x1 = g00 + (g10 - g00) * u;
+        float x2 = g01 + (g11 - g01) * u;
+        return x1 + (x2 - x1) * v;
+    }
+
+    private static float dot(int hash, float x, float y) {
+        int index = hash & 7;
+        return GRADIENT_X[index] * x + GRADIENT_Y[index] * y;
+    }
+}
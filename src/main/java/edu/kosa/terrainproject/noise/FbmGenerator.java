@@ -3,7 +3,7 @@ package edu.kosa.terrainproject.noise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FbmGenerator {
+public final class FbmGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger(FbmGenerator.class);
     private final NoiseGenerator noiseGenerator;
 
@@ -12,6 +12,10 @@ public class FbmGenerator {
         LOGGER.debug("Initialized FbmGenerator with noise generator: {}", noiseGenerator.getClass().getSimpleName());
     }
 
+    public NoiseGenerator getNoiseGenerator() {
+        return noiseGenerator;
+    }
+
     public double generate(double x, double y, NoiseConfig config, NoiseVariant variant) {
         return variant.apply(this, x, y, config.octaves, config.persistence, config.lacunarity);
     }
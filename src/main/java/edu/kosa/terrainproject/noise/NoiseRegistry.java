@@ -0,0 +1,40 @@
+package edu.kosa.terrainproject.noise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Shares immutable generators across chunks and threads, one permutation shuffle per (seed, scale)
+public final class NoiseRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NoiseRegistry.class);
+    private static final int MAX_ENTRIES = 64; // Slider drags create many scales, keep only the recent ones
+    private static final Map<Key, FbmGenerator> GENERATORS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FbmGenerator> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private record Key(long seed, long scaleBits) {
+    }
+
+    private NoiseRegistry() {
+    }
+
+    public static synchronized FbmGenerator fbm(long seed, double scale) {
+        Key key = new Key(seed, Double.doubleToLongBits(scale));
+        FbmGenerator generator = GENERATORS.get(key);
+        if (generator == null) {
+            generator = new FbmGenerator(new PerlinNoiseGenerator(seed, scale));
+            GENERATORS.put(key, generator);
+            LOGGER.debug("Registered noise generator for seed: {}, scale: {} ({} cached)", seed, scale, GENERATORS.size());
+        }
+        return generator;
+    }
+
+    public static NoiseGenerator perlin(long seed, double scale) {
+        return fbm(seed, scale).getNoiseGenerator();
+    }
+}
@@ -3,7 +3,7 @@ package edu.kosa.terrainproject.noise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class PerlinNoiseGenerator implements NoiseGenerator {
+public final class PerlinNoiseGenerator implements NoiseGenerator {
     private static final Logger LOGGER = LoggerFactory.getLogger(PerlinNoiseGenerator.class);
     private final PermutationTable permutationTable;
     private final GradientTable gradientTable;
@@ -29,18 +29,23 @@ public class PerlinNoiseGenerator implements NoiseGenerator {
         x *= scale;
         y *= scale;
 
-        int xi = (int) Math.floor(x) & 255;
-        int yi = (int) Math.floor(y) & 255;
-        double xf = x - Math.floor(x);
-        double yf = y - Math.floor(y);
+        // One floor per axis, the cell corner converts back to exactly what Math.floor returns
+        int cellX = fastFloor(x);
+        int cellY = fastFloor(y);
+        int xi = cellX & 255;
+        int yi = cellY & 255;
+        double xf = x - cellX;
+        double yf = y - cellY;
 
         double u = fade(xf);
         double v = fade(yf);
 
-        int aa = permutationTable.get(permutationTable.get(xi) + yi);
-        int ab = permutationTable.get(permutationTable.get(xi) + yi + 1);
-        int ba = permutationTable.get(permutationTable.get(xi + 1) + yi);
-        int bb = permutationTable.get(permutationTable.get(xi + 1) + yi + 1);
+        int a = permutationTable.get(xi) + yi;
+        int b = permutationTable.get(xi + 1) + yi;
+        int aa = permutationTable.get(a);
+        int ab = permutationTable.get(a + 1);
+        int ba = permutationTable.get(b);
+        int bb = permutationTable.get(b + 1);
 
         double g00 = gradientTable.dot(aa, xf, yf);
         double g10 = gradientTable.dot(ba, xf - 1, yf);
@@ -52,4 +57,10 @@ public class PerlinNoiseGenerator implements NoiseGenerator {
 
         return lerp(x1, x2, v);
     }
+
+    // Same as (int) Math.floor(value) for every value whose floor fits an int
+    static int fastFloor(double value) {
+        int truncated = (int) value;
+        return value < truncated ? truncated - 1 : truncated;
+    }
 }
\ No newline at end of file
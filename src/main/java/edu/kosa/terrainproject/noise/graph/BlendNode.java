@@ -0,0 +1,47 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Objects;
+
+// Linear interpolation from a to b by a weight layer clamped to [0, 1]
+public final class BlendNode extends NoiseNode {
+    private final NoiseNode a;
+    private final NoiseNode b;
+    private final NoiseNode weight;
+
+    BlendNode(NoiseNode a, NoiseNode b, NoiseNode weight) {
+        this.a = a;
+        this.b = b;
+        this.weight = weight;
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * Math.max(0, Math.min(1, t));
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return lerp(a.sample(x, z), b.sample(x, z), weight.sample(x, z));
+    }
+
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        double[] from = grid.get(a);
+        double[] to = grid.get(b);
+        double[] t = grid.get(weight);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = lerp(from[i], to[i], t[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlendNode that)) return false;
+        return a == that.a && b == that.b && weight == that.weight;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(a), System.identityHashCode(b), System.identityHashCode(weight));
+    }
+}
@@ -0,0 +1,33 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Arrays;
+
+public final class ConstantNode extends NoiseNode {
+    private final double value;
+
+    ConstantNode(double value) {
+        this.value = value;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return value;
+    }
+
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        Arrays.fill(out, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConstantNode that)) return false;
+        return Double.compare(value, that.value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+}
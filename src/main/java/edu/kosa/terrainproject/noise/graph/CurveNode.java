@@ -0,0 +1,41 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+// Applies a scalar function to its input. Curves are matched by identity, reuse the same instance to share a node.
+public final class CurveNode extends NoiseNode {
+    public static final DoubleUnaryOperator NORMALIZE = v -> (v + 1) / 2; // [-1, 1] to [0, 1]
+    private final NoiseNode input;
+    private final DoubleUnaryOperator curve;
+
+    CurveNode(NoiseNode input, DoubleUnaryOperator curve) {
+        this.input = input;
+        this.curve = curve;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return curve.applyAsDouble(input.sample(x, z));
+    }
+
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        double[] values = grid.get(input);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = curve.applyAsDouble(values[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CurveNode that)) return false;
+        return input == that.input && curve == that.curve;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(input), System.identityHashCode(curve));
+    }
+}
@@ -0,0 +1,48 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Objects;
+
+// Samples input at coordinates displaced by two offset layers
+public final class DomainWarpNode extends NoiseNode {
+    private final NoiseNode input;
+    private final NoiseNode warpX;
+    private final NoiseNode warpZ;
+    private final double strength;
+
+    DomainWarpNode(NoiseNode input, NoiseNode warpX, NoiseNode warpZ, double strength) {
+        this.input = input;
+        this.warpX = warpX;
+        this.warpZ = warpZ;
+        this.strength = strength;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return input.sample(x + strength * warpX.sample(x, z), z + strength * warpZ.sample(x, z));
+    }
+
+    // Offsets come from the grid cache, the input has to be sampled at the displaced points
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        double[] offsetX = grid.get(warpX);
+        double[] offsetZ = grid.get(warpZ);
+        int i = 0;
+        for (int z = 0; z < grid.getDepth(); z++) {
+            for (int x = 0; x < grid.getWidth(); x++, i++) {
+                out[i] = input.sample(grid.getOriginX() + x + strength * offsetX[i], grid.getOriginZ() + z + strength * offsetZ[i]);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DomainWarpNode that)) return false;
+        return input == that.input && warpX == that.warpX && warpZ == that.warpZ && Double.compare(strength, that.strength) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(input), System.identityHashCode(warpX), System.identityHashCode(warpZ), strength);
+    }
+}
@@ -0,0 +1,44 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import edu.kosa.terrainproject.noise.FbmGenerator;
+import edu.kosa.terrainproject.noise.NoiseVariant;
+
+import java.util.Objects;
+
+// Fractal layering of a source, output range follows NoiseVariant.apply
+public final class FbmNode extends NoiseNode {
+    private final SourceNode source;
+    private final NoiseVariant variant;
+    private final int octaves;
+    private final double persistence;
+    private final double lacunarity;
+    private final FbmGenerator fbm;
+
+    FbmNode(SourceNode source, NoiseVariant variant, int octaves, double persistence, double lacunarity) {
+        this.source = source;
+        this.variant = variant;
+        this.octaves = octaves;
+        this.persistence = persistence;
+        this.lacunarity = lacunarity;
+        this.fbm = source.getFbm();
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return variant.apply(fbm, x, z, octaves, persistence, lacunarity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FbmNode that)) return false;
+        return source == that.source && variant == that.variant && octaves == that.octaves
+                && Double.compare(persistence, that.persistence) == 0
+                && Double.compare(lacunarity, that.lacunarity) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(source), variant, octaves, persistence, lacunarity);
+    }
+}
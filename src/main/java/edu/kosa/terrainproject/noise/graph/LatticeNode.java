@@ -0,0 +1,73 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Objects;
+
+// A low-frequency input evaluated on a world-aligned lattice every spacing columns and bilinearly interpolated in
+// between when a grid asks for it. Single samples read the input directly, which is cheaper than interpolating four
+// lattice points, so they differ from the grid by the interpolation error.
+public final class LatticeNode extends NoiseNode {
+    private final NoiseNode input;
+    private final int spacing;
+
+    LatticeNode(NoiseNode input, int spacing) {
+        if (spacing < 1) {
+            throw new IllegalArgumentException("Lattice spacing must be positive, got " + spacing);
+        }
+        this.input = input;
+        this.spacing = spacing;
+    }
+
+    public int getSpacing() {
+        return spacing;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return input.sample(x, z);
+    }
+
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        int x0 = Math.floorDiv(grid.getOriginX(), spacing) * spacing;
+        int z0 = Math.floorDiv(grid.getOriginZ(), spacing) * spacing;
+        // One lattice point past the last column on each axis, the far corners of its cell
+        int columns = Math.floorDiv(grid.getOriginX() + grid.getWidth() - 1 - x0, spacing) + 2;
+        int rows = Math.floorDiv(grid.getOriginZ() + grid.getDepth() - 1 - z0, spacing) + 2;
+        double[] lattice = new double[columns * rows];
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < columns; i++) {
+                lattice[j * columns + i] = input.sample(x0 + i * spacing, z0 + j * spacing);
+            }
+        }
+        int index = 0;
+        for (int z = 0; z < grid.getDepth(); z++) {
+            int offsetZ = grid.getOriginZ() + z - z0;
+            int row = offsetZ / spacing * columns;
+            double tz = (double) (offsetZ % spacing) / spacing;
+            for (int x = 0; x < grid.getWidth(); x++) {
+                int offsetX = grid.getOriginX() + x - x0;
+                int cell = row + offsetX / spacing;
+                out[index++] = interpolate(lattice[cell], lattice[cell + 1], lattice[cell + columns],
+                        lattice[cell + columns + 1], (double) (offsetX % spacing) / spacing, tz);
+            }
+        }
+    }
+
+    private static double interpolate(double v00, double v10, double v01, double v11, double tx, double tz) {
+        double top = v00 + (v10 - v00) * tx;
+        double bottom = v01 + (v11 - v01) * tx;
+        return top + (bottom - top) * tz;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LatticeNode that)) return false;
+        return input == that.input && spacing == that.spacing;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(input), spacing);
+    }
+}
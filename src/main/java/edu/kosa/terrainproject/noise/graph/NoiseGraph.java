@@ -0,0 +1,69 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import edu.kosa.terrainproject.noise.NoiseVariant;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+// Builds noise layers as a DAG. Every factory interns its node, so structurally identical subgraphs collapse
+// into one instance and are evaluated once per NoiseGrid. Build on one thread, then share the graph freely.
+public final class NoiseGraph {
+    private final Map<NoiseNode, NoiseNode> canonical = new HashMap<>();
+    private final List<NoiseNode> nodes = new ArrayList<>();
+
+    public SourceNode source(long seed, double scale) {
+        return intern(new SourceNode(seed, scale));
+    }
+
+    public FbmNode fbm(SourceNode source, NoiseVariant variant, int octaves, double persistence, double lacunarity) {
+        return intern(new FbmNode(source, variant, octaves, persistence, lacunarity));
+    }
+
+    // Marks a low-frequency layer: sampled every spacing columns and interpolated, see LatticeNode
+    public LatticeNode lattice(NoiseNode input, int spacing) {
+        return intern(new LatticeNode(input, spacing));
+    }
+
+    public DomainWarpNode domainWarp(NoiseNode input, NoiseNode warpX, NoiseNode warpZ, double strength) {
+        return intern(new DomainWarpNode(input, warpX, warpZ, strength));
+    }
+
+    public BlendNode blend(NoiseNode a, NoiseNode b, NoiseNode weight) {
+        return intern(new BlendNode(a, b, weight));
+    }
+
+    public ThresholdNode threshold(NoiseNode input, double threshold) {
+        return intern(new ThresholdNode(input, threshold));
+    }
+
+    public CurveNode curve(NoiseNode input, DoubleUnaryOperator curve) {
+        return intern(new CurveNode(input, curve));
+    }
+
+    public ConstantNode constant(double value) {
+        return intern(new ConstantNode(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends NoiseNode> T intern(T node) {
+        NoiseNode existing = canonical.get(node);
+        if (existing != null) {
+            return (T) existing;
+        }
+        node.id = nodes.size();
+        nodes.add(node);
+        canonical.put(node, node);
+        return node;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public NoiseGrid newGrid(int originX, int originZ, int width, int depth) {
+        return new NoiseGrid(nodes.size(), originX, originZ, width, depth);
+    }
+}
@@ -0,0 +1,53 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Arrays;
+
+// A rectangle of columns with one cached output array per graph node; not thread-safe, use one per task
+public final class NoiseGrid {
+    private final int originX;
+    private final int originZ;
+    private final int width;
+    private final int depth;
+    private double[][] outputs; // Indexed by NoiseNode.id
+
+    NoiseGrid(int nodeCount, int originX, int originZ, int width, int depth) {
+        this.originX = originX;
+        this.originZ = originZ;
+        this.width = width;
+        this.depth = depth;
+        this.outputs = new double[nodeCount][];
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginZ() {
+        return originZ;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int index(int x, int z) {
+        return z * width + x;
+    }
+
+    public double[] get(NoiseNode node) {
+        if (node.id >= outputs.length) {
+            outputs = Arrays.copyOf(outputs, node.id + 1); // Node added after this grid was created
+        }
+        double[] out = outputs[node.id];
+        if (out == null) {
+            out = new double[width * depth];
+            node.evaluate(this, out);
+            outputs[node.id] = out;
+        }
+        return out;
+    }
+}
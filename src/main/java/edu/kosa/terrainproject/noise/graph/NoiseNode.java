@@ -0,0 +1,19 @@
+package edu.kosa.terrainproject.noise.graph;
+
+// A layer in a NoiseGraph. Nodes are immutable and compared structurally so the graph can intern them;
+// children are always canonical instances, so they are compared by identity.
+public abstract class NoiseNode {
+    int id = -1; // Assigned by NoiseGraph, indexes the per-grid output cache
+
+    public abstract double sample(double x, double z);
+
+    // Fills out (row-major, z * width + x) for the grid; nodes with children read them through grid.get()
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        int i = 0;
+        for (int z = 0; z < grid.getDepth(); z++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                out[i++] = sample(grid.getOriginX() + x, grid.getOriginZ() + z);
+            }
+        }
+    }
+}
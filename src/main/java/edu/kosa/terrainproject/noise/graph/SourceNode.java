@@ -0,0 +1,40 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import edu.kosa.terrainproject.noise.FbmGenerator;
+import edu.kosa.terrainproject.noise.NoiseRegistry;
+
+import java.util.Objects;
+
+// Raw Perlin noise for a (seed, scale) pair, backed by the shared NoiseRegistry generator
+public final class SourceNode extends NoiseNode {
+    private final long seed;
+    private final double scale;
+    private final FbmGenerator fbm;
+
+    SourceNode(long seed, double scale) {
+        this.seed = seed;
+        this.scale = scale;
+        this.fbm = NoiseRegistry.fbm(seed, scale);
+    }
+
+    FbmGenerator getFbm() {
+        return fbm;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return fbm.getNoiseGenerator().noise(x, z);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SourceNode that)) return false;
+        return seed == that.seed && Double.compare(scale, that.scale) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seed, scale);
+    }
+}
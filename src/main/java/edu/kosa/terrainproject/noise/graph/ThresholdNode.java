@@ -0,0 +1,39 @@
+package edu.kosa.terrainproject.noise.graph;
+
+import java.util.Objects;
+
+// 1 where the input is strictly above the threshold, 0 elsewhere
+public final class ThresholdNode extends NoiseNode {
+    private final NoiseNode input;
+    private final double threshold;
+
+    ThresholdNode(NoiseNode input, double threshold) {
+        this.input = input;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public double sample(double x, double z) {
+        return input.sample(x, z) > threshold ? 1 : 0;
+    }
+
+    @Override
+    protected void evaluate(NoiseGrid grid, double[] out) {
+        double[] values = grid.get(input);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = values[i] > threshold ? 1 : 0;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ThresholdNode that)) return false;
+        return input == that.input && Double.compare(threshold, that.threshold) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(input), threshold);
+    }
+}
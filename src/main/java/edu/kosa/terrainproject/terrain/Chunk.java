@@ -1,113 +1,166 @@
 package edu.kosa.terrainproject.terrain;
 
+import edu.kosa.terrainproject.diagnostics.ChunkMeshEvent;
+import edu.kosa.terrainproject.diagnostics.ChunkUnloadEvent;
+import edu.kosa.terrainproject.diagnostics.MeshUploadEvent;
+import edu.kosa.terrainproject.graphics.FaceMesh;
+import edu.kosa.terrainproject.graphics.FaceMeshData;
 import edu.kosa.terrainproject.graphics.Mesh;
-import edu.kosa.terrainproject.noise.FbmGenerator;
-import edu.kosa.terrainproject.noise.NoiseConfig;
-import edu.kosa.terrainproject.noise.NoiseVariant;
-import edu.kosa.terrainproject.noise.PerlinNoiseGenerator;
+import edu.kosa.terrainproject.graphics.MeshData;
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Chunk {
     private static final Logger LOGGER = LoggerFactory.getLogger(Chunk.class);
-    public static final int SIZE = 16;
-    private final byte[][][] blocks;
+    public static final int DEFAULT_SIZE = 16;
+    public static final int MAX_SIZE = 64; // FaceMesh packs local x and z into 6 bits each
+    // Neighbor offsets per face: +X, -X, +Y, -Y, +Z, -Z
+    private static final int[] FACE_DX = {1, -1, 0, 0, 0, 0};
+    private static final int[] FACE_DY = {0, 0, 1, -1, 0, 0};
+    private static final int[] FACE_DZ = {0, 0, 0, 0, 1, -1};
+    private final int size; // Width and depth in blocks, a world setting, see TerrainConfig.chunkSize
+    private final ChunkSection[] sections; // null entries are all air
     private final ChunkPos pos;
-    private final FbmGenerator terrainFbm;
-    private final FbmGenerator waterFbm;
-    private final TerrainConfig config;
-    private final World world;
+    private int minY = Integer.MAX_VALUE;
+    private int maxY = -1; // Occupied block range, empty when maxY < minY
+    private volatile int occluderHeight; // Every column is opaque from the bottom up to this height
+    // Mesh data is built on the update thread and handed to the render thread, which alone owns the GL meshes
+    private final AtomicReference<MeshData> pendingMesh = new AtomicReference<>();
+    private final AtomicReference<FaceMeshData> pendingFaceMesh = new AtomicReference<>();
+    private volatile boolean meshBuilt;
+    private volatile boolean faceMeshBuilt;
+    private volatile long meshByteSize; // Size of the last built data of both formats
+    private volatile long faceMeshByteSize;
     private Mesh mesh;
+    private FaceMesh faceMesh;
+    private volatile boolean dirty; // Blocks changed since the last mesh build
+    private volatile MeshMode meshMode = MeshMode.VOXEL;
+    private volatile int detailLevel; // Terrain detail the blocks were generated at, see HeightFunction
 
-    public Chunk(ChunkPos pos, PerlinNoiseGenerator noise, TerrainConfig config, World world) {
+    // How generateMesh() turns the blocks into quads, packed face meshes are always voxel faces
+    public enum MeshMode {
+        VOXEL, // A quad per visible block face
+        HEIGHTFIELD // Smooth surface through the column tops, see HeightfieldMesher
+    }
+
+    // Generation only borrows the world and config, the chunk keeps nothing but its block data afterwards
+    // erosion is null when the configuration uses raw heights
+    public Chunk(ChunkPos pos, HeightFunction heights, ErosionStage erosion, World world) {
+        this(pos, heights, erosion, world, 0);
+    }
+
+    // Coarser detail levels are only used without erosion, which needs full detail heights
+    public Chunk(ChunkPos pos, HeightFunction heights, ErosionStage erosion, World world, int detailLevel) {
         this.pos = pos;
-        this.terrainFbm = new FbmGenerator(noise);
-        this.waterFbm = new FbmGenerator(new PerlinNoiseGenerator(config.seed + 1, 0.04));
-        this.config = config;
-        this.world = world;
-        this.blocks = new byte[SIZE][config.maxHeight][SIZE]; // Updated to maxHeight
-        generateTerrain();
+        this.size = heights.getConfig().chunkSize;
+        this.sections = new ChunkSection[(heights.getConfig().maxHeight + ChunkSection.HEIGHT - 1) / ChunkSection.HEIGHT];
+        this.detailLevel = detailLevel;
+        generateTerrain(heights, erosion, world, false);
     }
 
-    private void generateTerrain() {
+    // Rebuilds a chunk from serialized block data, e.g. one received from a chunk server
+    public Chunk(ChunkPos pos, int size, ChunkSection[] sections, int minY, int maxY, int occluderHeight) {
+        this.pos = pos;
+        this.size = size;
+        this.sections = sections;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.occluderHeight = occluderHeight;
+    }
+
+    private void generateTerrain(HeightFunction heights, ErosionStage erosion, World world, boolean keepWaterLevel) {
+        TerrainSnapshot config = heights.getConfig();
         int waterCount = 0;
         int waterRegionCount = 0;
-        int[][] terrainHeights = new int[SIZE][SIZE];
-        boolean[][] isWaterRegion = new boolean[SIZE][SIZE];
-        double[][] blendFactors = new double[SIZE][SIZE]; // For biome transitions
-        NoiseConfig terrainConfig = NoiseConfig.forTerrain(config.seed, config.scale);
-        NoiseVariant noiseVariant = NoiseVariant.valueOf(config.noiseType.toUpperCase());
-
-        for (int x = 0; x < SIZE; x++) {
-            for (int z = 0; z < SIZE; z++) {
-                int worldX = pos.getX() * SIZE + x;
-                int worldZ = pos.getZ() * SIZE + z;
-                terrainHeights[x][z] = world.getTerrainHeight(worldX, worldZ);
-                double waterNoiseValue = waterFbm.generate(worldX, worldZ, NoiseConfig.forWater(config.seed + 1), NoiseVariant.STANDARD);
-                isWaterRegion[x][z] = waterNoiseValue > 0.6;
+        // Every layer is evaluated once for the whole chunk, shared layers are read from the grid cache
+        NoiseGrid grid = heights.getGraph().newGrid(pos.getX() * size, pos.getZ() * size, size, size);
+        int[] gridHeights = new int[size * size];
+        if (erosion != null) {
+            erosion.heights(grid.getOriginX(), grid.getOriginZ(), size, size, gridHeights);
+        } else {
+            heights.heights(grid, gridHeights, detailLevel);
+        }
+        boolean[] gridWater = heights.waterRegions(grid);
+        double[] gridBlend = new double[size * size]; // For biome transitions
+        heights.blendFactors(grid, gridWater, gridBlend, detailLevel);
+
+        int[][] terrainHeights = new int[size][size];
+        boolean[][] isWaterRegion = new boolean[size][size];
+        double[][] blendFactors = new double[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                int i = grid.index(x, z);
+                terrainHeights[x][z] = gridHeights[i];
+                isWaterRegion[x][z] = gridWater[i];
                 if (isWaterRegion[x][z]) {
                     waterRegionCount++;
                 }
-                // Calculate blend factor for grass-to-sand transition
-                double sandNoiseValue = terrainFbm.generate(worldX, worldZ, terrainConfig, noiseVariant);
-                sandNoiseValue = (sandNoiseValue + 1) / 2; // Normalize to [0, 1]
-                int baseHeight = (int) Math.floor(sandNoiseValue * config.heightScale + config.baseHeight);
-                if (!isWaterRegion[x][z] && baseHeight <= config.sandHeightThreshold + config.biomeBlendRange) {
-                    double t = (baseHeight - (config.sandHeightThreshold - config.biomeBlendRange / 2)) / config.biomeBlendRange;
-                    blendFactors[x][z] = Math.max(0, Math.min(1, t));
-                } else {
-                    blendFactors[x][z] = isWaterRegion[x][z] ? 0 : 1; // 0 for water, 1 for full grass
-                }
+                blendFactors[x][z] = gridBlend[i];
             }
         }
         LOGGER.debug("Chunk at {}: {} water regions identified", pos, waterRegionCount);
 
-        int waterSurfaceHeight = Integer.MAX_VALUE;
-        for (int x = 0; x < SIZE; x++) {
-            for (int z = 0; z < SIZE; z++) {
-                if (!isWaterRegion[x][z]) continue;
-
-                int maxSurroundHeight = terrainHeights[x][z];
-                for (int dx = -1; dx <= 1; dx++) {
-                    for (int dz = -1; dz <= 1; dz++) {
-                        if (dx == 0 && dz == 0) continue;
-                        int nx = x + dx;
-                        int nz = z + dz;
-                        if (nx >= 0 && nx < SIZE && nz >= 0 && nz < SIZE) {
-                            maxSurroundHeight = Math.max(maxSurroundHeight, terrainHeights[nx][nz]);
-                        } else {
-                            int worldX = pos.getX() * SIZE + nx;
-                            int worldZ = pos.getZ() * SIZE + nz;
-                            maxSurroundHeight = Math.max(maxSurroundHeight, world.getTerrainHeight(worldX, worldZ));
+        // Neighbours inherit the lake level, so it comes from full detail heights like the lake mask, and refining
+        // keeps the level the chunk was generated with instead of seeing neighbours generated after it
+        int waterSurfaceHeight;
+        if (keepWaterLevel) {
+            waterSurfaceHeight = world.getWaterSurfaceHeight(pos.getX(), pos.getZ());
+        } else {
+            int[] lakeHeights = gridHeights;
+            if (detailLevel > 0 && waterRegionCount > 0) {
+                lakeHeights = new int[size * size];
+                heights.heights(grid, lakeHeights, 0);
+            }
+            waterSurfaceHeight = Integer.MAX_VALUE;
+            for (int x = 0; x < size; x++) {
+                for (int z = 0; z < size; z++) {
+                    if (!isWaterRegion[x][z]) continue;
+
+                    int maxSurroundHeight = lakeHeights[grid.index(x, z)];
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dz = -1; dz <= 1; dz++) {
+                            if (dx == 0 && dz == 0) continue;
+                            int nx = x + dx;
+                            int nz = z + dz;
+                            if (nx >= 0 && nx < size && nz >= 0 && nz < size) {
+                                maxSurroundHeight = Math.max(maxSurroundHeight, lakeHeights[grid.index(nx, nz)]);
+                            } else {
+                                // Only lakes on the chunk edge look past it, those few columns are sampled directly
+                                int worldX = pos.getX() * size + nx;
+                                int worldZ = pos.getZ() * size + nz;
+                                maxSurroundHeight = Math.max(maxSurroundHeight, erosion != null ? erosion.height(worldX, worldZ) : heights.height(worldX, worldZ));
+                            }
                         }
                     }
+                    waterSurfaceHeight = Math.min(waterSurfaceHeight, maxSurroundHeight);
                 }
-                waterSurfaceHeight = Math.min(waterSurfaceHeight, maxSurroundHeight);
             }
-        }
 
-        for (int side = 0; side < 4; side++) {
-            int offsetX = side == 0 ? -1 : side == 1 ? 1 : 0;
-            int offsetZ = side == 2 ? -1 : side == 3 ? 1 : 0;
-            ChunkPos neighborPos = new ChunkPos(pos.getX() + offsetX, pos.getZ() + offsetZ);
-            int neighborWaterHeight = world.getWaterSurfaceHeight(neighborPos);
-            waterSurfaceHeight = Math.min(waterSurfaceHeight, neighborWaterHeight);
-        }
+            for (int side = 0; side < 4; side++) {
+                int offsetX = side == 0 ? -1 : side == 1 ? 1 : 0;
+                int offsetZ = side == 2 ? -1 : side == 3 ? 1 : 0;
+                int neighborWaterHeight = world.getWaterSurfaceHeight(pos.getX() + offsetX, pos.getZ() + offsetZ);
+                waterSurfaceHeight = Math.min(waterSurfaceHeight, neighborWaterHeight);
+            }
 
-        if (waterSurfaceHeight == Integer.MAX_VALUE) {
-            waterSurfaceHeight = config.sandHeightThreshold;
+            if (waterSurfaceHeight == Integer.MAX_VALUE) {
+                waterSurfaceHeight = config.sandHeightThreshold;
+            }
+            waterSurfaceHeight = Math.max(1, Math.min(config.maxHeight - 1, waterSurfaceHeight));
+            world.setWaterSurfaceHeight(pos, waterSurfaceHeight);
         }
-        waterSurfaceHeight = Math.max(1, Math.min(config.maxHeight - 1, waterSurfaceHeight));
-        world.setWaterSurfaceHeight(pos, waterSurfaceHeight);
 
-        for (int x = 0; x < SIZE; x++) {
-            for (int z = 0; z < SIZE; z++) {
+        int[][] blendedHeights = new int[size][size];
+        int topY = 0;
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
                 int height = terrainHeights[x][z];
                 boolean isWater = isWaterRegion[x][z];
-                int waterDepth = isWater ? 3 : 0;
-                int lakeBedHeight = isWater ? waterSurfaceHeight - waterDepth : -1;
 
                 // Blend height for grass-to-sand transition
                 double blendFactor = blendFactors[x][z];
@@ -115,45 +168,291 @@ public class Chunk {
                 if (!isWater && blendFactor < 1 && height <= config.sandHeightThreshold + config.biomeBlendRange) {
                     blendedHeight = (int) lerp(config.sandHeightThreshold, height, blendFactor);
                 }
+                blendedHeights[x][z] = blendedHeight;
+                topY = Math.max(topY, isWater ? waterSurfaceHeight : Math.max(blendedHeight, config.sandHeightThreshold));
+            }
+        }
+        topY = Math.min(config.maxHeight - 1, topY);
 
-                boolean isSandBiome = blendedHeight <= config.sandHeightThreshold && !isWater;
-                for (int y = 0; y < config.maxHeight; y++) {
-                    if (isWater && y <= waterSurfaceHeight && y > lakeBedHeight) {
-                        blocks[x][y][z] = 4; // Water
-                        waterCount++;
-                    } else if (isWater && y <= lakeBedHeight) {
-                        blocks[x][y][z] = 3; // Sand for lake bed
-                    } else if (isSandBiome && y <= config.sandHeightThreshold) {
-                        blocks[x][y][z] = 3; // Sand
-                    } else if (y < blendedHeight && !isWater) {
-                        blocks[x][y][z] = 2; // Stone
-                    } else if (y == blendedHeight && !isWater) {
-                        blocks[x][y][z] = 1; // Grass
-                    } else {
-                        blocks[x][y][z] = 0; // Air
+        // Only sections up to the highest column are filled, everything above stays null (air)
+        for (int section = 0; section <= topY / ChunkSection.HEIGHT; section++) {
+            byte[] buffer = ChunkSection.newBuffer(size);
+            int baseY = section * ChunkSection.HEIGHT;
+            int endY = Math.min(ChunkSection.HEIGHT, config.maxHeight - baseY);
+            for (int x = 0; x < size; x++) {
+                for (int z = 0; z < size; z++) {
+                    boolean isWater = isWaterRegion[x][z];
+                    int blendedHeight = blendedHeights[x][z];
+                    int lakeBedHeight = isWater ? waterSurfaceHeight - 3 : -1;
+                    boolean isSandBiome = blendedHeight <= config.sandHeightThreshold && !isWater;
+                    for (int ly = 0; ly < endY; ly++) {
+                        int y = baseY + ly;
+                        byte type;
+                        if (isWater && y <= waterSurfaceHeight && y > lakeBedHeight) {
+                            type = 4; // Water
+                            waterCount++;
+                        } else if (isWater && y <= lakeBedHeight) {
+                            type = 3; // Sand for lake bed
+                        } else if (isSandBiome && y <= config.sandHeightThreshold) {
+                            type = 3; // Sand
+                        } else if (y < blendedHeight && !isWater) {
+                            type = 2; // Stone
+                        } else if (y == blendedHeight && !isWater) {
+                            type = 1; // Grass
+                        } else {
+                            continue; // Air
+                        }
+                        buffer[ChunkSection.index(size, x, ly, z)] = type;
+                        minY = Math.min(minY, y);
+                        maxY = Math.max(maxY, y);
                     }
                 }
             }
+            sections[section] = ChunkSection.of(size, buffer);
         }
+        occluderHeight = computeOccluderHeight();
         LOGGER.debug("Chunk at {}: {} water blocks placed, water surface height: {}", pos, waterCount, waterSurfaceHeight);
     }
 
+    // Lowest column top of contiguous opaque blocks, water does not hide anything
+    private int computeOccluderHeight() {
+        int height = Integer.MAX_VALUE;
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                int y = 0;
+                while (y < height && y < sections.length * ChunkSection.HEIGHT) {
+                    ChunkSection section = sections[y / ChunkSection.HEIGHT];
+                    if (section == null || !isOpaque(section.getBlock(x, y % ChunkSection.HEIGHT, z))) {
+                        break;
+                    }
+                    y++;
+                }
+                height = y;
+                if (height == 0) {
+                    return 0;
+                }
+            }
+        }
+        return height;
+    }
+
+    private static boolean isOpaque(byte type) {
+        return type != 0 && type != 4;
+    }
+
     private double lerp(double a, double b, double t) {
         return a + (b - a) * Math.max(0, Math.min(1, t));
     }
 
     public byte getBlock(int x, int y, int z) {
-        if (x < 0 || x >= SIZE || y < 0 || y >= config.maxHeight || z < 0 || z >= SIZE) {
+        if (x < 0 || x >= size || y < minY || y > maxY || z < 0 || z >= size) {
             return 0;
         }
-        return blocks[x][y][z];
+        ChunkSection section = sections[y / ChunkSection.HEIGHT];
+        return section == null ? 0 : section.getBlock(x, y % ChunkSection.HEIGHT, z);
+    }
+
+    // Returns false when the position is outside the chunk or already holds the type
+    public boolean setBlock(int x, int y, int z, byte type) {
+        if (x < 0 || x >= size || y < 0 || y >= sections.length * ChunkSection.HEIGHT || z < 0 || z >= size) {
+            return false;
+        }
+        if (getBlock(x, y, z) == type) {
+            return false;
+        }
+        int index = y / ChunkSection.HEIGHT;
+        ChunkSection section = sections[index];
+        if (section == null || section.isUniform()) {
+            section = ChunkSection.expand(section, size);
+            sections[index] = section;
+        }
+        section.setBlock(x, y % ChunkSection.HEIGHT, z, type);
+        if (!isOpaque(type) && y < occluderHeight) {
+            occluderHeight = y; // Filling the hole again keeps the lower, still conservative height
+        }
+        if (type != 0) {
+            // The range only grows, removed blocks leave it conservative
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        dirty = true;
+        return true;
+    }
+
+    // Top of the highest block in the column, lakes are skipped unless includeWater; 0 for an empty column
+    public int getSurfaceHeight(int x, int z, boolean includeWater) {
+        for (int y = maxY; y >= minY; y--) {
+            byte type = getBlock(x, y, z);
+            if (type != 0 && (includeWater || type != 4)) {
+                return y + 1;
+            }
+        }
+        return 0;
+    }
+
+    public int getDetailLevel() {
+        return detailLevel;
+    }
+
+    // Generates the blocks again at a finer detail level, the meshes are rebuilt as for an edit. Only called on the
+    // update thread, which is the one reading blocks for meshing; the built meshes stay valid until then.
+    public void refine(HeightFunction heights, World world, int detailLevel) {
+        Arrays.fill(sections, null);
+        minY = Integer.MAX_VALUE;
+        maxY = -1;
+        this.detailLevel = detailLevel;
+        generateTerrain(heights, null, world, true);
+        dirty = true;
+    }
+
+    public MeshMode getMeshMode() {
+        return meshMode;
+    }
+
+    // Drops the built quad mesh data when the mode changes, so the next load builds it in the new mode
+    public void setMeshMode(MeshMode meshMode) {
+        if (this.meshMode != meshMode) {
+            this.meshMode = meshMode;
+            releaseMeshData(false);
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+
+    // Rebuilds whichever mesh formats have been built, chunks without meshes are built on their next load
+    public void remesh(World world) {
+        dirty = false;
+        if (meshBuilt) {
+            generateMesh(world);
+        }
+        if (faceMeshBuilt) {
+            generateFaceMesh(world);
+        }
+    }
+
+    public boolean hasMeshData(boolean packedFaces) {
+        return packedFaces ? faceMeshBuilt : meshBuilt;
+    }
+
+    // Forgets built data of one format so it is rebuilt on demand, the GL side is released separately
+    public void releaseMeshData(boolean packedFaces) {
+        if (packedFaces) {
+            faceMeshBuilt = false;
+            pendingFaceMesh.set(null);
+            faceMeshByteSize = 0;
+        } else {
+            meshBuilt = false;
+            pendingMesh.set(null);
+            meshByteSize = 0;
+        }
+    }
+
+    // Built on the update thread but not uploaded by the render thread yet
+    public boolean hasPendingUpload() {
+        return pendingMesh.get() != null || pendingFaceMesh.get() != null;
+    }
+
+    public long getMeshByteSize() {
+        return meshByteSize + faceMeshByteSize;
+    }
+
+    // Render thread only: swaps in data built since the last call, returns whether anything was uploaded
+    public boolean uploadPendingMeshes() {
+        boolean uploaded = false;
+        MeshData meshData = pendingMesh.getAndSet(null);
+        if (meshData != null) {
+            if (mesh != null) {
+                mesh.cleanup();
+            }
+            MeshUploadEvent event = new MeshUploadEvent();
+            event.begin();
+            mesh = meshData.isEmpty() ? null : meshData.upload();
+            commitUpload(event, meshMode == MeshMode.HEIGHTFIELD ? "Heightfield" : "Voxel", meshData.getByteSize());
+            uploaded = true;
+        }
+        FaceMeshData faceMeshData = pendingFaceMesh.getAndSet(null);
+        if (faceMeshData != null) {
+            if (faceMesh != null) {
+                faceMesh.cleanup();
+            }
+            MeshUploadEvent event = new MeshUploadEvent();
+            event.begin();
+            faceMesh = faceMeshData.isEmpty() ? null : faceMeshData.upload();
+            commitUpload(event, "Packed Faces", faceMeshData.getByteSize());
+            uploaded = true;
+        }
+        return uploaded;
+    }
+
+    private void commitUpload(MeshUploadEvent event, String format, long bytes) {
+        if (event.shouldCommit()) {
+            event.chunkX = pos.getX();
+            event.chunkZ = pos.getZ();
+            event.format = format;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    // null when the section is all air
+    public ChunkSection getSection(int index) {
+        return sections[index];
+    }
+
+    public int getOccluderHeight() {
+        return occluderHeight;
+    }
+
+    // Approximate heap footprint of the block storage, uniform and empty sections are free
+    public int getBlockByteSize() {
+        int bytes = 0;
+        for (ChunkSection section : sections) {
+            if (section != null) {
+                bytes += section.getByteSize();
+            }
+        }
+        return bytes;
+    }
+
+    public int getSize() {
+        return size;
     }
 
     public ChunkPos getPos() {
         return pos;
     }
 
+    // Builds mesh data only, the render thread uploads it through uploadPendingMeshes()
     public void generateMesh(World world) {
+        dirty = false;
+        ChunkMeshEvent event = new ChunkMeshEvent();
+        event.begin();
+        if (meshMode == MeshMode.HEIGHTFIELD) {
+            MeshData data = HeightfieldMesher.build(this, world);
+            commitMesh(event, "Heightfield", data.getVertexCount(), data.getFaceCount(), data.getByteSize());
+            meshByteSize = data.getByteSize();
+            pendingMesh.set(data);
+            meshBuilt = true;
+            return;
+        }
         List<Float> vertices = new ArrayList<>();
         List<Float> texCoords = new ArrayList<>();
         List<Float> normals = new ArrayList<>();
@@ -161,55 +460,98 @@ public class Chunk {
         List<Integer> indices = new ArrayList<>();
         int index = 0;
 
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < config.maxHeight; y++) {
-                for (int z = 0; z < SIZE; z++) {
-                    byte type = blocks[x][y][z];
-                    if (type == 0) continue;
+        int[] faces = collectVisibleFaces(world);
+        for (int packed : faces) {
+            int face = (packed >>> 21) & 7;
+            int wx = pos.getX() * size + (packed & 63) + (face == 0 ? 1 : 0);
+            int y = ((packed >>> 12) & 511) + (face == 2 ? 1 : 0);
+            int wz = pos.getZ() * size + ((packed >>> 6) & 63) + (face == 4 ? 1 : 0);
+            addFace(vertices, texCoords, normals, alphas, indices, index, wx, y, wz, (byte) (packed >>> 24), face);
+            index += 4;
+        }
 
-                    int wx = pos.getX() * SIZE + x;
-                    int wz = pos.getZ() * SIZE + z;
+        if (vertices.isEmpty()) {
+            LOGGER.warn("Empty mesh for chunk at {}", pos);
+        }
+        MeshData data = new MeshData(
+                toFloatArray(vertices),
+                toFloatArray(texCoords),
+                toFloatArray(normals),
+                toFloatArray(alphas),
+                toIntArray(indices)
+        );
+        commitMesh(event, "Voxel", data.getVertexCount(), data.getFaceCount(), data.getByteSize());
+        meshByteSize = data.getByteSize();
+        pendingMesh.set(data);
+        meshBuilt = true;
+    }
 
-                    if (world.getBlock(wx + 1, y, wz) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx + 1, y, wz, type, 0);
-                        index += 4;
-                    }
-                    if (world.getBlock(wx - 1, y, wz) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx, y, wz, type, 1);
-                        index += 4;
-                    }
-                    if (world.getBlock(wx, y + 1, wz) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx, y + 1, wz, type, 2);
-                        index += 4;
-                    }
-                    if (world.getBlock(wx, y - 1, wz) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx, y, wz, type, 3);
-                        index += 4;
-                    }
-                    if (world.getBlock(wx, y, wz + 1) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx, y, wz + 1, type, 4);
-                        index += 4;
-                    }
-                    if (world.getBlock(wx, y, wz - 1) == 0) {
-                        addFace(vertices, texCoords, normals, alphas, indices, index, wx, y, wz, type, 5);
-                        index += 4;
+    public void generateFaceMesh(World world) {
+        dirty = false;
+        ChunkMeshEvent event = new ChunkMeshEvent();
+        event.begin();
+        int[] faces = collectVisibleFaces(world);
+        if (faces.length == 0) {
+            LOGGER.warn("Empty face mesh for chunk at {}", pos);
+        }
+        FaceMeshData data = new FaceMeshData(faces, pos.getX() * size, pos.getZ() * size);
+        commitMesh(event, "Packed Faces", faces.length * 4, faces.length, data.getByteSize());
+        faceMeshByteSize = data.getByteSize();
+        pendingFaceMesh.set(data);
+        faceMeshBuilt = true;
+    }
+
+    private void commitMesh(ChunkMeshEvent event, String format, int vertexCount, int faceCount, long bytes) {
+        if (event.shouldCommit()) {
+            event.chunkX = pos.getX();
+            event.chunkZ = pos.getZ();
+            event.format = format;
+            event.vertexCount = vertexCount;
+            event.faceCount = faceCount;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    // Visible faces in FaceMesh's packed layout, shared by both mesh builders
+    private int[] collectVisibleFaces(World world) {
+        int[] faces = new int[1024];
+        int count = 0;
+
+        for (int y = minY; y <= maxY; y++) {
+            ChunkSection section = sections[y / ChunkSection.HEIGHT];
+            if (section == null) {
+                y = (y / ChunkSection.HEIGHT + 1) * ChunkSection.HEIGHT - 1; // Skip the empty section
+                continue;
+            }
+            int ly = y % ChunkSection.HEIGHT;
+            for (int x = 0; x < size; x++) {
+                for (int z = 0; z < size; z++) {
+                    byte type = section.getBlock(x, ly, z);
+                    if (type == 0) continue;
+
+                    for (int face = 0; face < 6; face++) {
+                        byte neighbor = FACE_DY[face] != 0
+                                ? getBlock(x, y + FACE_DY[face], z)
+                                : neighborBlock(world, x + FACE_DX[face], y, z + FACE_DZ[face]);
+                        if (neighbor != 0) continue;
+                        if (count == faces.length) {
+                            faces = Arrays.copyOf(faces, count * 2);
+                        }
+                        faces[count++] = FaceMesh.pack(x, y, z, face, type);
                     }
                 }
             }
         }
+        return Arrays.copyOf(faces, count);
+    }
 
-        if (!vertices.isEmpty()) {
-            mesh = new Mesh(
-                    toFloatArray(vertices),
-                    toFloatArray(texCoords),
-                    toFloatArray(normals),
-                    toFloatArray(alphas),
-                    toIntArray(indices)
-            );
-        } else {
-            LOGGER.warn("Empty mesh for chunk at {}", pos);
-            mesh = null;
+    // Neighbors inside this chunk skip the world lookup, only border faces reach into adjacent chunks
+    private byte neighborBlock(World world, int x, int y, int z) {
+        if (x >= 0 && x < size && z >= 0 && z < size) {
+            return getBlock(x, y, z);
         }
+        return world.getBlock(pos.getX() * size + x, y, pos.getZ() * size + z);
     }
 
     private void addFace(List<Float> vertices, List<Float> texCoords, List<Float> normals,
@@ -280,14 +622,47 @@ public class Chunk {
         return array;
     }
 
+    // GL accessors and cleanup are for the render thread only
     public Mesh getMesh() {
         return mesh;
     }
 
+    public FaceMesh getFaceMesh() {
+        return faceMesh;
+    }
+
+    public void cleanupMesh(boolean packedFaces) {
+        if (packedFaces && faceMesh != null) {
+            faceMesh.cleanup();
+            faceMesh = null;
+        } else if (!packedFaces && mesh != null) {
+            mesh.cleanup();
+            mesh = null;
+        }
+    }
+
     public void cleanup() {
+        if (mesh == null && faceMesh == null) {
+            return;
+        }
+        ChunkUnloadEvent event = new ChunkUnloadEvent();
+        event.begin();
+        long bytes = 0;
         if (mesh != null) {
+            bytes += mesh.getByteSize();
             mesh.cleanup();
             mesh = null;
         }
+        if (faceMesh != null) {
+            bytes += faceMesh.getByteSize();
+            faceMesh.cleanup();
+            faceMesh = null;
+        }
+        if (event.shouldCommit()) {
+            event.chunkX = pos.getX();
+            event.chunkZ = pos.getZ();
+            event.bytes = bytes;
+            event.commit();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package edu.kosa.terrainproject.terrain;
+
+import edu.kosa.terrainproject.util.ConcurrentLongIntMap;
+import edu.kosa.terrainproject.util.ConcurrentLongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Keeps the chunks (and their meshes) of recently used configurations so switching back to one is free
+public class ChunkCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkCache.class);
+    private static final int CHUNK_OVERHEAD_BYTES = 256; // Object headers, section array and map slot
+    private final long budgetBytes;
+    private final Consumer<Chunk> releaser; // Frees the meshes of evicted chunks, possibly deferred to the GL thread
+    private final LinkedHashMap<TerrainSnapshot, Generation> generations = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    public static final class Generation {
+        final ConcurrentLongObjectMap<Chunk> chunks;
+        final ConcurrentLongIntMap waterSurfaceHeights;
+        long byteSize;
+
+        Generation(ConcurrentLongObjectMap<Chunk> chunks, ConcurrentLongIntMap waterSurfaceHeights) {
+            this.chunks = chunks;
+            this.waterSurfaceHeights = waterSurfaceHeights;
+        }
+    }
+
+    public ChunkCache(long budgetBytes, Consumer<Chunk> releaser) {
+        this.budgetBytes = budgetBytes;
+        this.releaser = releaser;
+    }
+
+    public synchronized Generation take(TerrainSnapshot config) {
+        Generation generation = generations.remove(config);
+        if (generation != null) {
+            usedBytes -= generation.byteSize;
+        }
+        return generation;
+    }
+
+    public synchronized void store(TerrainSnapshot config, Generation generation) {
+        if (generation.chunks.size() == 0) {
+            return;
+        }
+        generation.byteSize = estimateBytes(generation);
+        Generation previous = generations.put(config, generation);
+        if (previous != null) {
+            usedBytes -= previous.byteSize;
+            previous.chunks.forEach((key, chunk) -> releaser.accept(chunk));
+        }
+        usedBytes += generation.byteSize;
+
+        // Least recently used configurations go first, the one just stored is only dropped if it alone exceeds the budget
+        Iterator<Map.Entry<TerrainSnapshot, Generation>> it = generations.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<TerrainSnapshot, Generation> eldest = it.next();
+            it.remove();
+            usedBytes -= eldest.getValue().byteSize;
+            eldest.getValue().chunks.forEach((key, chunk) -> releaser.accept(chunk));
+            LOGGER.debug("Evicted cached terrain for {}", eldest.getKey());
+        }
+        LOGGER.debug("Terrain cache holds {} configurations, {} KB of {} KB", generations.size(), usedBytes >> 10, budgetBytes >> 10);
+    }
+
+    // Must run on the GL thread, meshes are deleted directly
+    public synchronized void clear() {
+        generations.values().forEach(generation -> generation.chunks.forEach((key, chunk) -> chunk.cleanup()));
+        generations.clear();
+        usedBytes = 0;
+    }
+
+    private long estimateBytes(Generation generation) {
+        long[] bytes = new long[1];
+        generation.chunks.forEach((key, chunk) -> {
+            bytes[0] += CHUNK_OVERHEAD_BYTES + chunk.getBlockByteSize() + chunk.getMeshByteSize();
+        });
+        return bytes[0];
+    }
+}
@@ -1,5 +1,7 @@
 package edu.kosa.terrainproject.terrain;
 
+import edu.kosa.terrainproject.util.LongHash;
+
 public class ChunkPos {
     private final int x;
     private final int z;
@@ -17,6 +19,27 @@ public class ChunkPos {
         return z;
     }
 
+    public long toLong() {
+        return pack(x, z);
+    }
+
+    // Packs chunk coordinates into one long key: x in the high 32 bits, z in the low 32 bits
+    public static long pack(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackZ(long key) {
+        return (int) key;
+    }
+
+    public static ChunkPos fromLong(long key) {
+        return new ChunkPos(unpackX(key), unpackZ(key));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -27,6 +50,11 @@ public class ChunkPos {
 
     @Override
     public int hashCode() {
-        return 31 * x + z;
+        return LongHash.mix(pack(x, z));
+    }
+
+    @Override
+    public String toString() {
+        return "(" + x + ", " + z + ")";
     }
 }
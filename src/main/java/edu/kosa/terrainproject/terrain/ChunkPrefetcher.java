@@ -0,0 +1,177 @@
+package edu.kosa.terrainproject.terrain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Generates the chunks the camera is about to need before the streaming ring reaches them. The camera velocity is
+// extrapolated one chunk at a time for a few chunks; every chunk that the view square around a predicted position
+// covers, and the current one does not, is queued nearest first. Work runs on minimum priority threads, so the
+// chunks the update thread needs right now always come first, and anything no longer on the predicted path is
+// cancelled when the direction changes.
+// Owned by the update thread, only the generation tasks run elsewhere.
+public class ChunkPrefetcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkPrefetcher.class);
+    private static final int LOOKAHEAD_CHUNKS = 2; // Rings prefetched ahead of the streaming square
+    private static final float MIN_SPEED = 1f; // Units per second, slower movement is treated as standing still
+    private static final float VELOCITY_SMOOTHING = 0.2f; // Weight of the newest sample
+    private final World world;
+    private final ExecutorService executor;
+    private final Map<Long, Future<?>> pending = new HashMap<>(); // Keyed by ChunkPos.pack
+    private final ReentrantReadWriteLock generationLock = new ReentrantReadWriteLock();
+    private final AtomicInteger prefetched = new AtomicInteger();
+    private boolean hasPosition;
+    private float lastX;
+    private float lastZ;
+    private float velocityX;
+    private float velocityZ;
+    private int cancelled;
+
+    public ChunkPrefetcher(World world, int threads) {
+        this.world = world;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "chunk-prefetch-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    // Call once per tick with the camera position, the half size of the streaming square in chunks and the detail
+    // level for chunks at its edge, where every prefetched chunk starts out
+    public void update(float x, float z, float deltaTime, int renderDistance, int detailLevel) {
+        if (hasPosition && deltaTime > 0) {
+            velocityX += ((x - lastX) / deltaTime - velocityX) * VELOCITY_SMOOTHING;
+            velocityZ += ((z - lastZ) / deltaTime - velocityZ) * VELOCITY_SMOOTHING;
+        }
+        hasPosition = true;
+        lastX = x;
+        lastZ = z;
+        pending.values().removeIf(Future::isDone);
+
+        Set<Long> wanted = predict(x, z, renderDistance);
+        Iterator<Map.Entry<Long, Future<?>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Future<?>> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(false); // A chunk already being generated is left to finish
+                it.remove();
+                cancelled++;
+            }
+        }
+        if (world.isRemote()) {
+            // The source already loads asynchronously, asking early is all prefetching needs to do
+            for (long key : wanted) {
+                world.requestChunk(ChunkPos.unpackX(key), ChunkPos.unpackZ(key));
+            }
+            return;
+        }
+        TerrainSnapshot config = world.getConfig();
+        for (long key : wanted) {
+            if (!pending.containsKey(key)) {
+                int chunkX = ChunkPos.unpackX(key);
+                int chunkZ = ChunkPos.unpackZ(key);
+                pending.put(key, executor.submit(() -> generate(chunkX, chunkZ, config, detailLevel)));
+            }
+        }
+    }
+
+    // Chunks ahead of the camera that are not generated yet, nearest first
+    private Set<Long> predict(float x, float z, int renderDistance) {
+        Set<Long> wanted = new LinkedHashSet<>();
+        float speed = (float) Math.sqrt(velocityX * velocityX + velocityZ * velocityZ);
+        if (speed < MIN_SPEED) {
+            return wanted;
+        }
+        int size = world.getChunkSize();
+        int centerX = Math.floorDiv((int) Math.floor(x), size);
+        int centerZ = Math.floorDiv((int) Math.floor(z), size);
+        List<int[]> covered = new ArrayList<>();
+        covered.add(new int[]{centerX, centerZ});
+        for (int step = 1; step <= LOOKAHEAD_CHUNKS; step++) {
+            float aheadX = x + velocityX / speed * step * size;
+            float aheadZ = z + velocityZ / speed * step * size;
+            int predictedX = Math.floorDiv((int) Math.floor(aheadX), size);
+            int predictedZ = Math.floorDiv((int) Math.floor(aheadZ), size);
+            for (int cx = predictedX - renderDistance; cx <= predictedX + renderDistance; cx++) {
+                for (int cz = predictedZ - renderDistance; cz <= predictedZ + renderDistance; cz++) {
+                    if (!isCovered(covered, cx, cz, renderDistance) && world.getLoadedChunk(cx, cz) == null) {
+                        wanted.add(ChunkPos.pack(cx, cz));
+                    }
+                }
+            }
+            covered.add(new int[]{predictedX, predictedZ});
+        }
+        return wanted;
+    }
+
+    private static boolean isCovered(List<int[]> centers, int chunkX, int chunkZ, int renderDistance) {
+        for (int[] center : centers) {
+            if (Math.abs(chunkX - center[0]) <= renderDistance && Math.abs(chunkZ - center[1]) <= renderDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(int chunkX, int chunkZ, TerrainSnapshot config, int detailLevel) {
+        generationLock.readLock().lock();
+        try {
+            // A prediction made for an older configuration must not land in the new one
+            if (world.getConfig().equals(config) && world.getLoadedChunk(chunkX, chunkZ) == null) {
+                world.getChunk(chunkX, chunkZ, detailLevel);
+                prefetched.incrementAndGet();
+            }
+        } finally {
+            generationLock.readLock().unlock();
+        }
+    }
+
+    // Cancels queued work and runs action once no prefetch is generating, for changes like World.regenerate
+    public void runExclusive(Runnable action) {
+        cancelAll();
+        generationLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+    }
+
+    public void cancelAll() {
+        cancelled += pending.size();
+        pending.values().forEach(future -> future.cancel(false));
+        pending.clear();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public int getPrefetchedCount() {
+        return prefetched.get();
+    }
+
+    public int getCancelledCount() {
+        return cancelled;
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+        LOGGER.info("Prefetched {} chunks, cancelled {} predictions", prefetched.get(), cancelled);
+    }
+}
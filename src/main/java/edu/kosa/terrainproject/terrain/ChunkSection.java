@@ -0,0 +1,93 @@
+package edu.kosa.terrainproject.terrain;
+
+import java.util.Arrays;
+
+public final class ChunkSection {
+    public static final int HEIGHT = 16;
+    private static final ChunkSection[] UNIFORM = new ChunkSection[256];
+
+    static {
+        for (int i = 0; i < UNIFORM.length; i++) {
+            UNIFORM[i] = new ChunkSection(0, (byte) i, null);
+        }
+    }
+
+    private final int size; // Chunk width, only meaningful for dense sections
+    private final byte uniformBlock;
+    private final byte[] blocks; // null for uniform sections
+
+    private ChunkSection(int size, byte uniformBlock, byte[] blocks) {
+        this.size = size;
+        this.uniformBlock = uniformBlock;
+        this.blocks = blocks;
+    }
+
+    // Shared marker for a section filled with a single block type
+    public static ChunkSection uniform(byte type) {
+        return UNIFORM[type & 0xFF];
+    }
+
+    // Collapses the buffer into a uniform marker when every block matches, null when it is all air
+    public static ChunkSection of(int size, byte[] blocks) {
+        byte first = blocks[0];
+        for (int i = 1; i < blocks.length; i++) {
+            if (blocks[i] != first) {
+                return new ChunkSection(size, first, blocks);
+            }
+        }
+        return first == 0 ? null : uniform(first);
+    }
+
+    public static int index(int size, int x, int localY, int z) {
+        return (localY * size + z) * size + x;
+    }
+
+    public static byte[] newBuffer(int size) {
+        return new byte[volume(size)];
+    }
+
+    // Dense, writable copy of this section, uniform markers are shared and must never be written
+    public static ChunkSection expand(ChunkSection section, int size) {
+        byte[] blocks = newBuffer(size);
+        if (section != null) {
+            if (section.blocks != null) {
+                System.arraycopy(section.blocks, 0, blocks, 0, blocks.length);
+            } else {
+                Arrays.fill(blocks, section.uniformBlock);
+            }
+        }
+        return new ChunkSection(size, (byte) 0, blocks);
+    }
+
+    // Raw block array in index() order, for serialization; out must hold volume(size) blocks
+    public void copyBlocks(byte[] out) {
+        if (blocks != null) {
+            System.arraycopy(blocks, 0, out, 0, blocks.length);
+        } else {
+            Arrays.fill(out, uniformBlock);
+        }
+    }
+
+    public static int volume(int size) {
+        return size * HEIGHT * size;
+    }
+
+    public boolean isUniform() {
+        return blocks == null;
+    }
+
+    public byte getBlock(int x, int localY, int z) {
+        return blocks == null ? uniformBlock : blocks[index(size, x, localY, z)];
+    }
+
+    public void setBlock(int x, int localY, int z, byte type) {
+        if (blocks == null) {
+            throw new IllegalStateException("Uniform sections are shared, expand them before writing");
+        }
+        blocks[index(size, x, localY, z)] = type;
+    }
+
+    public int getByteSize() {
+        return blocks == null ? 0 : blocks.length;
+    }
+}
@@ -0,0 +1,12 @@
+package edu.kosa.terrainproject.terrain;
+
+import java.util.concurrent.CompletableFuture;
+
+// Where a World gets chunks it has not generated itself, e.g. a remote chunk server
+public interface ChunkSource {
+    // May complete on any thread; the chunk must belong to the given configuration
+    CompletableFuture<Chunk> load(ChunkPos pos, TerrainSnapshot config);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,171 @@
+package edu.kosa.terrainproject.terrain;
+
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
+import edu.kosa.terrainproject.util.ConcurrentLongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+// Eroded column heights for one HeightFunction. The world is split into square region tiles that erode in
+// parallel on the common pool and are cached; each tile erodes a copy padded with a border of neighboring
+// terrain so droplets near its edge see the real slopes. Within BLEND columns of a tile line the two eroded tiles
+// are cross-faded, so heights do not step where different droplet sets meet. Tiles are seeded from the terrain
+// seed and their own coordinates, so the result does not depend on thread count or request order.
+public final class ErosionStage {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ErosionStage.class);
+    public static final int TILE_SIZE = 128; // Core columns per tile side, a multiple of the chunk size
+    private static final int BORDER = 24; // Longer than a droplet usually travels
+    private static final int BLEND = 16; // Columns on each side of a tile line that mix both tiles, at most BORDER
+    private static final int PADDED_SIZE = TILE_SIZE + 2 * BORDER;
+    private static final int KEPT_SIZE = TILE_SIZE + 2 * BLEND; // Core plus the blend band a tile keeps
+    private static final float DROPLETS_PER_COLUMN = 0.6f;
+    private static final int MAX_TILES = 256; // 50 KB each
+    private static final int KEEP_RADIUS = 4; // Tiles kept around the latest request when the cache is full
+    private final HeightFunction heights;
+    private final ConcurrentLongObjectMap<CompletableFuture<short[]>> tiles = new ConcurrentLongObjectMap<>(); // Keyed by ChunkPos.pack of the tile
+
+    public ErosionStage(HeightFunction heights) {
+        this.heights = heights;
+    }
+
+    public int height(int worldX, int worldZ) {
+        int tileX = Math.floorDiv(worldX, TILE_SIZE);
+        int tileZ = Math.floorDiv(worldZ, TILE_SIZE);
+        int localX = worldX - tileX * TILE_SIZE;
+        int localZ = worldZ - tileZ * TILE_SIZE;
+        if (inCore(localX) && inCore(localZ)) {
+            return tile(tileX, tileZ).join()[(localZ + BLEND) * KEPT_SIZE + localX + BLEND];
+        }
+        int[] out = new int[1];
+        heights(worldX, worldZ, 1, 1, out);
+        return out[0];
+    }
+
+    // Fills the rectangle row-major and queues the surrounding tiles so streaming rarely waits on erosion.
+    // Every tile the rectangle or its blend band touches is waited for once, not per column.
+    public void heights(int originX, int originZ, int width, int depth, int[] out) {
+        int firstX = Math.floorDiv(originX - BLEND, TILE_SIZE);
+        int firstZ = Math.floorDiv(originZ - BLEND, TILE_SIZE);
+        int columns = Math.floorDiv(originX + width - 1 + BLEND, TILE_SIZE) - firstX + 1;
+        int rows = Math.floorDiv(originZ + depth - 1 + BLEND, TILE_SIZE) - firstZ + 1;
+        if (width * depth > 1) {
+            int tileX = Math.floorDiv(originX, TILE_SIZE);
+            int tileZ = Math.floorDiv(originZ, TILE_SIZE);
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    tile(tileX + dx, tileZ + dz);
+                }
+            }
+        }
+        short[][] kept = new short[columns * rows][];
+        for (int tz = 0; tz < rows; tz++) {
+            for (int tx = 0; tx < columns; tx++) {
+                kept[tz * columns + tx] = tile(firstX + tx, firstZ + tz).join();
+            }
+        }
+        for (int z = 0; z < depth; z++) {
+            int worldZ = originZ + z;
+            for (int x = 0; x < width; x++) {
+                int worldX = originX + x;
+                int ownX = Math.floorDiv(worldX, TILE_SIZE);
+                int ownZ = Math.floorDiv(worldZ, TILE_SIZE);
+                int ownLocalX = worldX - ownX * TILE_SIZE;
+                int ownLocalZ = worldZ - ownZ * TILE_SIZE;
+                if (inCore(ownLocalX) && inCore(ownLocalZ)) {
+                    short[] tile = kept[(ownZ - firstZ) * columns + ownX - firstX];
+                    out[z * width + x] = tile[(ownLocalZ + BLEND) * KEPT_SIZE + ownLocalX + BLEND];
+                    continue;
+                }
+                // Weights of the up to two tiles per axis sum to one, and are 1 and 0 away from tile lines
+                float sum = 0;
+                for (int tz = Math.floorDiv(worldZ - BLEND, TILE_SIZE); tz <= Math.floorDiv(worldZ + BLEND, TILE_SIZE); tz++) {
+                    int localZ = worldZ - tz * TILE_SIZE;
+                    float weightZ = weight(localZ);
+                    if (weightZ == 0) {
+                        continue;
+                    }
+                    for (int tx = Math.floorDiv(worldX - BLEND, TILE_SIZE); tx <= Math.floorDiv(worldX + BLEND, TILE_SIZE); tx++) {
+                        int localX = worldX - tx * TILE_SIZE;
+                        float weight = weightZ * weight(localX);
+                        if (weight != 0) {
+                            short[] tile = kept[(tz - firstZ) * columns + tx - firstX];
+                            sum += weight * tile[(localZ + BLEND) * KEPT_SIZE + localX + BLEND];
+                        }
+                    }
+                }
+                out[z * width + x] = Math.round(sum);
+            }
+        }
+    }
+
+    // Columns no other tile blends into
+    private static boolean inCore(int local) {
+        return local >= BLEND && local < TILE_SIZE - BLEND;
+    }
+
+    // Share of a tile in a column at the given offset from its core origin, rising across the band at either edge
+    private static float weight(int local) {
+        float rise = (local + BLEND + 0.5f) / (2 * BLEND);
+        float fall = (TILE_SIZE + BLEND - local - 0.5f) / (2 * BLEND);
+        return Math.max(0, Math.min(1, Math.min(rise, fall)));
+    }
+
+    private CompletableFuture<short[]> tile(int tileX, int tileZ) {
+        long key = ChunkPos.pack(tileX, tileZ);
+        CompletableFuture<short[]> tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
+        CompletableFuture<short[]> created = new CompletableFuture<>();
+        tile = tiles.computeIfAbsent(key, k -> created);
+        if (tile == created) {
+            // Only the thread that won the slot starts the work
+            ForkJoinPool.commonPool().execute(() -> {
+                try {
+                    created.complete(erodeTile(tileX, tileZ));
+                } catch (Throwable t) {
+                    created.completeExceptionally(t);
+                }
+            });
+            if (tiles.size() > MAX_TILES) {
+                int removed = tiles.removeIf((k, v) -> Math.abs(ChunkPos.unpackX(k) - tileX) > KEEP_RADIUS
+                        || Math.abs(ChunkPos.unpackZ(k) - tileZ) > KEEP_RADIUS);
+                LOGGER.debug("Dropped {} eroded tiles far from ({}, {})", removed, tileX, tileZ);
+            }
+        }
+        return tile;
+    }
+
+    private short[] erodeTile(int tileX, int tileZ) {
+        long start = System.nanoTime();
+        int originX = tileX * TILE_SIZE - BORDER;
+        int originZ = tileZ * TILE_SIZE - BORDER;
+        NoiseGrid grid = heights.getGraph().newGrid(originX, originZ, PADDED_SIZE, PADDED_SIZE);
+        int[] raw = new int[PADDED_SIZE * PADDED_SIZE];
+        heights.heights(grid, raw);
+        boolean[] water = heights.waterRegions(grid);
+        float[] map = new float[raw.length];
+        for (int i = 0; i < raw.length; i++) {
+            map[i] = raw[i];
+        }
+
+        long seed = heights.getConfig().seed * 0x9E3779B97F4A7C15L + ChunkPos.pack(tileX, tileZ);
+        HydraulicErosion.erode(map, PADDED_SIZE, seed, (int) (PADDED_SIZE * PADDED_SIZE * DROPLETS_PER_COLUMN));
+
+        int maxHeight = heights.getConfig().maxHeight;
+        short[] kept = new short[KEPT_SIZE * KEPT_SIZE];
+        int offset = BORDER - BLEND;
+        for (int z = 0; z < KEPT_SIZE; z++) {
+            for (int x = 0; x < KEPT_SIZE; x++) {
+                int i = (z + offset) * PADDED_SIZE + x + offset;
+                // Lake columns keep their raw height, the lake surface is derived from it
+                int height = water[i] ? raw[i] : Math.round(map[i]);
+                kept[z * KEPT_SIZE + x] = (short) Math.max(0, Math.min(maxHeight - 1, height));
+            }
+        }
+        LOGGER.debug("Eroded tile ({}, {}) in {} ms", tileX, tileZ, (System.nanoTime() - start) / 1_000_000);
+        return kept;
+    }
+}
@@ -0,0 +1,247 @@
+package edu.kosa.terrainproject.terrain;
+
+import edu.kosa.terrainproject.noise.NoiseConfig;
+import edu.kosa.terrainproject.noise.NoiseVariant;
+import edu.kosa.terrainproject.noise.graph.CurveNode;
+import edu.kosa.terrainproject.noise.graph.NoiseGraph;
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
+import edu.kosa.terrainproject.noise.graph.NoiseNode;
+import edu.kosa.terrainproject.noise.graph.SourceNode;
+
+// A TerrainSnapshot compiled into a noise graph plus the per-column height logic. Chunk grids may drop the finest
+// terrain octaves (off by at most heightErrorBound() blocks) and interpolate the region layer every REGION_SPACING
+// columns (off by at most a block); single columns and lakes are always exact.
+public final class HeightFunction {
+    public static final double WATER_THRESHOLD = 0.6; // Lake noise above this is water
+    public static final int REGION_SPACING = 4; // Columns between region noise samples
+    public static final int MIN_COARSE_OCTAVES = 5; // Fewer octaves save less than refining the chunk later costs
+    private static final int MAX_COARSE_ERROR = 4; // Blocks, larger errors send too many columns back to full detail
+    private final TerrainSnapshot config;
+    private final NoiseGraph graph = new NoiseGraph();
+    private final NoiseNode terrain; // [0, 1]
+    private final NoiseNode[] terrainLevels; // terrain at each detail level, level 0 is terrain itself
+    private final double[] levelErrors; // Bound of the terrain value error per detail level, see heightErrorBound()
+    private final NoiseNode sand; // [0, 1], only shares the terrain node when the settings match the sand defaults
+    private final NoiseNode[] sandLevels; // sand at each detail level
+    private final NoiseNode lakeNoise; // [-1, 1], thresholded into water
+    private final NoiseNode water; // 1 for lake columns
+    private final NoiseNode region; // [-1, 1], interpolated from a lattice unless compiled exact
+    private final NoiseNode mountainScale; // Height scale for grass columns, flat to mountainous by region
+    private final double grassThreshold; // Heights above this may be amplified into hills and mountains
+    private final double transitionStart;
+    private final double transitionEnd;
+    private final double mountainHeightScale;
+    private final double sandBlendStart;
+
+    private HeightFunction(TerrainSnapshot config, int regionSpacing) {
+        this.config = config;
+        this.grassThreshold = config.sandHeightThreshold + config.biomeBlendRange;
+        this.transitionStart = config.flatThreshold - config.transitionRange / 2;
+        this.transitionEnd = config.flatThreshold + config.transitionRange / 2;
+        this.mountainHeightScale = config.heightScale * config.mountainAmplifier;
+        this.sandBlendStart = config.sandHeightThreshold - config.biomeBlendRange / 2;
+
+        NoiseVariant variant = NoiseVariant.valueOf(config.noiseType.toUpperCase());
+        NoiseConfig sandNoise = NoiseConfig.forTerrain(config.seed, config.scale);
+        NoiseConfig waterNoise = NoiseConfig.forWater(config.seed + 1);
+        SourceNode terrainSource = graph.source(config.seed, config.scale);
+        this.terrain = graph.curve(graph.fbm(terrainSource, variant, config.octaves, config.persistence, config.lacunarity), CurveNode.NORMALIZE);
+        this.sand = graph.curve(graph.fbm(terrainSource, variant, sandNoise.octaves, sandNoise.persistence, sandNoise.lacunarity), CurveNode.NORMALIZE);
+        // Hybrid FBM weights each octave by the previous ones, so dropping octaves has no useful bound
+        int levels = variant == NoiseVariant.HYBRID ? 1 : Math.max(1, config.octaves);
+        this.terrainLevels = new NoiseNode[levels];
+        this.sandLevels = new NoiseNode[levels];
+        this.levelErrors = new double[levels];
+        terrainLevels[0] = terrain;
+        sandLevels[0] = sand;
+        double totalAmplitude = 0;
+        for (int i = 0; i < config.octaves; i++) {
+            totalAmplitude += Math.pow(config.persistence, i);
+        }
+        for (int level = 1; level < levels; level++) {
+            int octaves = config.octaves - level;
+            terrainLevels[level] = graph.curve(graph.fbm(terrainSource, variant, octaves, config.persistence, config.lacunarity), CurveNode.NORMALIZE);
+            int sandOctaves = Math.max(1, sandNoise.octaves - level);
+            sandLevels[level] = graph.curve(graph.fbm(terrainSource, variant, sandOctaves, sandNoise.persistence, sandNoise.lacunarity), CurveNode.NORMALIZE);
+            double droppedAmplitude = 0;
+            for (int i = octaves; i < config.octaves; i++) {
+                droppedAmplitude += Math.pow(config.persistence, i);
+            }
+            // Dropped octaves stay within their amplitude, halved by the variant and again by NORMALIZE
+            levelErrors[level] = variant == NoiseVariant.STANDARD ? droppedAmplitude / 4 : droppedAmplitude / totalAmplitude / 2;
+        }
+        // The height logic and chunk generation share the one lake layer that is actually drawn
+        SourceNode waterSource = graph.source(config.seed + 1, 0.04);
+        this.lakeNoise = graph.fbm(waterSource, NoiseVariant.STANDARD, waterNoise.octaves, waterNoise.persistence, waterNoise.lacunarity);
+        this.water = graph.threshold(lakeNoise, WATER_THRESHOLD);
+        SourceNode regionSource = graph.source(config.seed + 2, config.regionScale);
+        NoiseNode region = graph.fbm(regionSource, NoiseVariant.STANDARD, 3, 0.5, 2.0);
+        if (regionSpacing > 1) {
+            region = graph.lattice(region, regionSpacing);
+        }
+        this.region = region;
+        this.mountainScale = graph.curve(region, this::regionHeightScale);
+    }
+
+    public static HeightFunction compile(TerrainSnapshot config) {
+        return new HeightFunction(config, REGION_SPACING);
+    }
+
+    // Every layer evaluated at every column, the reference for the interpolated region layer
+    public static HeightFunction compileExact(TerrainSnapshot config) {
+        return new HeightFunction(config, 1);
+    }
+
+    public TerrainSnapshot getConfig() {
+        return config;
+    }
+
+    public NoiseGraph getGraph() {
+        return graph;
+    }
+
+    // The layers as this function evaluates them, for checking their interpolation against exact evaluation
+    public NoiseNode getRegionNoise() {
+        return region;
+    }
+
+    public NoiseNode getLakeNoise() {
+        return lakeNoise;
+    }
+
+    public int height(int worldX, int worldZ) {
+        double noiseValue = terrain.sample(worldX, worldZ);
+        // Only modify height for grass biome (above sandHeightThreshold + biomeBlendRange and not water)
+        int baseHeight = (int) Math.floor(noiseValue * config.heightScale + config.baseHeight);
+        double effectiveHeightScale = config.heightScale;
+        if (baseHeight > grassThreshold && water.sample(worldX, worldZ) == 0) {
+            effectiveHeightScale = mountainScale.sample(worldX, worldZ);
+        }
+        return clampHeight(noiseValue, effectiveHeightScale);
+    }
+
+    // Coarsest level is getMaxDetailLevel(), level 0 is full detail
+    public int getMaxDetailLevel() {
+        return terrainLevels.length - 1;
+    }
+
+    // Largest difference in blocks between a column at this level and at full detail, DetailLevelBenchmark checks it
+    public int heightErrorBound(int detailLevel) {
+        double maxHeightScale = Math.max(config.heightScale, Math.max(config.flatHeightScale, mountainHeightScale));
+        return (int) Math.ceil(levelErrors[detailLevel] * maxHeightScale);
+    }
+
+    // Coarsest level whose height error stays within maxError blocks, and within MAX_COARSE_ERROR where coarse levels
+    // stop saving time; always 0 below MIN_COARSE_OCTAVES
+    public int detailLevelFor(int maxError) {
+        if (config.octaves < MIN_COARSE_OCTAVES) {
+            return 0;
+        }
+        maxError = Math.min(maxError, MAX_COARSE_ERROR);
+        int level = 0;
+        while (level < getMaxDetailLevel() && heightErrorBound(level + 1) <= maxError) {
+            level++;
+        }
+        return level;
+    }
+
+    // Column heights for the whole grid, row-major like the grid itself
+    public void heights(NoiseGrid grid, int[] out) {
+        heights(grid, out, 0);
+    }
+
+    public void heights(NoiseGrid grid, int[] out, int detailLevel) {
+        double[] noiseValues = grid.get(terrainLevels[detailLevel]);
+        double[] waterValues = grid.get(water);
+        double[] scales = null; // Region noise is only evaluated when some column reaches the grass biome
+        double error = levelErrors[detailLevel];
+        for (int i = 0; i < out.length; i++) {
+            double noiseValue = noiseValues[i];
+            if (error > 0 && waterValues[i] == 0
+                    && baseHeight(noiseValue - error) <= grassThreshold && baseHeight(noiseValue + error) > grassThreshold) {
+                // Full detail could fall on either side of the grass threshold, so this column gets it. Lakes keep
+                // the plain height scale on both sides and need no check.
+                noiseValue = terrain.sample(grid.getOriginX() + i % grid.getWidth(), grid.getOriginZ() + i / grid.getWidth());
+            }
+            int baseHeight = (int) Math.floor(noiseValue * config.heightScale + config.baseHeight);
+            double effectiveHeightScale = config.heightScale;
+            if (baseHeight > grassThreshold && waterValues[i] == 0) {
+                if (scales == null) {
+                    scales = grid.get(mountainScale);
+                }
+                effectiveHeightScale = scales[i];
+            }
+            out[i] = clampHeight(noiseValue, effectiveHeightScale);
+        }
+    }
+
+    private int baseHeight(double noiseValue) {
+        return (int) Math.floor(noiseValue * config.heightScale + config.baseHeight);
+    }
+
+    private int clampHeight(double noiseValue, double heightScale) {
+        int height = (int) Math.floor(noiseValue * heightScale + config.baseHeight);
+        return Math.max(0, Math.min(config.maxHeight - 1, height));
+    }
+
+    // Region-based smooth transition between flat and mountainous areas
+    private double regionHeightScale(double regionValue) {
+        if (regionValue < transitionStart) {
+            return config.flatHeightScale;
+        } else if (regionValue > transitionEnd) {
+            return mountainHeightScale;
+        }
+        // Custom grassSmoothstep for ultra-smooth grass-to-grass transitions
+        double t = grassSmoothstep((regionValue - transitionStart) / config.transitionRange);
+        return lerp(config.flatHeightScale, mountainHeightScale, t);
+    }
+
+    // Columns that chunk generation turns into lakes
+    public boolean isWaterRegion(int worldX, int worldZ) {
+        return water.sample(worldX, worldZ) != 0;
+    }
+
+    public boolean[] waterRegions(NoiseGrid grid) {
+        double[] waterValues = grid.get(water);
+        boolean[] out = new boolean[waterValues.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = waterValues[i] != 0;
+        }
+        return out;
+    }
+
+    // Grass-to-sand blend for a column: 0 for water, 1 for full grass
+    public double blendFactor(int worldX, int worldZ, boolean isWater) {
+        return isWater ? 0 : blendFactor(sand.sample(worldX, worldZ));
+    }
+
+    public void blendFactors(NoiseGrid grid, boolean[] isWater, double[] out) {
+        blendFactors(grid, isWater, out, 0);
+    }
+
+    public void blendFactors(NoiseGrid grid, boolean[] isWater, double[] out, int detailLevel) {
+        double[] sandValues = grid.get(sandLevels[detailLevel]);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = isWater[i] ? 0 : blendFactor(sandValues[i]);
+        }
+    }
+
+    private double blendFactor(double sandNoiseValue) {
+        int baseHeight = (int) Math.floor(sandNoiseValue * config.heightScale + config.baseHeight);
+        if (baseHeight <= grassThreshold) {
+            double t = (baseHeight - sandBlendStart) / config.biomeBlendRange;
+            return Math.max(0, Math.min(1, t));
+        }
+        return 1;
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * Math.max(0, Math.min(1, t));
+    }
+
+    private static double grassSmoothstep(double t) {
+        t = Math.max(0, Math.min(1, t));
+        double smooth = t * t * (3 - 2 * t);
+        return smooth * smooth;
+    }
+}
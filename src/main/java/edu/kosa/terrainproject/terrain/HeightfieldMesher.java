@@ -0,0 +1,160 @@
+package edu.kosa.terrainproject.terrain;
+
+import edu.kosa.terrainproject.graphics.MeshData;
+
+import java.util.Arrays;
+
+// Meshes a chunk as a smooth surface instead of voxel faces. Every corner of the column grid gets one vertex at the
+// average surface height of the four columns around it, with a normal from the neighbouring corner heights, and
+// each column becomes one quad. Corners are shared by all columns of the same material; where the material changes
+// the corner is duplicated, so every quad samples a single atlas tile. Lakes get a separate flat surface.
+// Columns past the chunk border come from the neighbouring chunk, or from the height function when it is not loaded,
+// so adjacent chunks compute the same border corners and meet without seams. Overhangs and holes are not
+// represented, the surface follows the highest solid block of each column.
+final class HeightfieldMesher {
+    private static final int MATERIALS = 3; // Grass top, stone, sand, in atlas order
+    private static final float[] MATERIAL_U = {0.0f, 0.25f, 0.5f};
+    private static final float WATER_U = 0.75f;
+    private static final float TILE_U = 0.25f;
+
+    private HeightfieldMesher() {
+    }
+
+    static MeshData build(Chunk chunk, World world) {
+        int size = chunk.getSize();
+        int originX = chunk.getPos().getX() * size;
+        int originZ = chunk.getPos().getZ() * size;
+
+        // Column surfaces from -2 to size + 1, corner normals look one corner past the border
+        int span = size + 4;
+        int[] surface = new int[span * span];
+        for (int x = -2; x < size + 2; x++) {
+            for (int z = -2; z < size + 2; z++) {
+                surface[(x + 2) * span + z + 2] = columnSurface(chunk, world, originX + x, originZ + z);
+            }
+        }
+        // Corner heights from -1 to size + 1
+        int corners = size + 3;
+        float[] cornerHeight = new float[corners * corners];
+        for (int x = -1; x <= size + 1; x++) {
+            for (int z = -1; z <= size + 1; z++) {
+                int sx = x + 2;
+                int sz = z + 2;
+                cornerHeight[(x + 1) * corners + z + 1] = (surface[(sx - 1) * span + sz - 1] + surface[sx * span + sz - 1]
+                        + surface[(sx - 1) * span + sz] + surface[sx * span + sz]) * 0.25f;
+            }
+        }
+
+        int maxVertices = (size + 1) * (size + 1) * MATERIALS + size * size * 4;
+        float[] vertices = new float[maxVertices * 3];
+        float[] texCoords = new float[maxVertices * 2];
+        float[] normals = new float[maxVertices * 3];
+        float[] alphas = new float[maxVertices];
+        int[] indices = new int[size * size * 12];
+        int vertexCount = 0;
+        int indexCount = 0;
+
+        int[] landVertex = new int[(size + 1) * (size + 1) * MATERIALS];
+        Arrays.fill(landVertex, -1);
+        int[] waterVertex = new int[(size + 1) * (size + 1)];
+        float[] waterVertexY = new float[waterVertex.length];
+        Arrays.fill(waterVertex, -1);
+        int[] quad = new int[4];
+
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                int material = material(chunk.getBlock(x, chunk.getSurfaceHeight(x, z, false) - 1, z));
+                // Same corner order and winding as the voxel top face
+                for (int c = 0; c < 4; c++) {
+                    int cx = x + (c == 1 || c == 2 ? 1 : 0);
+                    int cz = z + (c == 0 || c == 1 ? 1 : 0);
+                    int slot = (cx * (size + 1) + cz) * MATERIALS + material;
+                    if (landVertex[slot] < 0) {
+                        int ci = (cx + 1) * corners + cz + 1;
+                        float nx = cornerHeight[ci - corners] - cornerHeight[ci + corners];
+                        float nz = cornerHeight[ci - 1] - cornerHeight[ci + 1];
+                        float length = (float) Math.sqrt(nx * nx + 4 + nz * nz);
+                        putVertex(vertices, texCoords, normals, alphas, vertexCount, originX + cx, cornerHeight[ci], originZ + cz,
+                                MATERIAL_U[material] + (cx & 1) * TILE_U, cz & 1, nx / length, 2 / length, nz / length, 1f);
+                        landVertex[slot] = vertexCount++;
+                    }
+                    quad[c] = landVertex[slot];
+                }
+                indexCount = putQuad(indices, indexCount, quad);
+
+                int waterTop = chunk.getSurfaceHeight(x, z, true);
+                if (chunk.getBlock(x, waterTop - 1, z) != 4) {
+                    continue;
+                }
+                for (int c = 0; c < 4; c++) {
+                    int cx = x + (c == 1 || c == 2 ? 1 : 0);
+                    int cz = z + (c == 0 || c == 1 ? 1 : 0);
+                    int slot = cx * (size + 1) + cz;
+                    // Neighbouring lakes of different levels keep separate vertices
+                    if (waterVertex[slot] < 0 || waterVertexY[slot] != waterTop) {
+                        putVertex(vertices, texCoords, normals, alphas, vertexCount, originX + cx, waterTop, originZ + cz,
+                                WATER_U + (cx & 1) * TILE_U, cz & 1, 0f, 1f, 0f, 0.5f);
+                        waterVertex[slot] = vertexCount++;
+                        waterVertexY[slot] = waterTop;
+                    }
+                    quad[c] = waterVertex[slot];
+                }
+                indexCount = putQuad(indices, indexCount, quad);
+            }
+        }
+
+        return new MeshData(
+                Arrays.copyOf(vertices, vertexCount * 3),
+                Arrays.copyOf(texCoords, vertexCount * 2),
+                Arrays.copyOf(normals, vertexCount * 3),
+                Arrays.copyOf(alphas, vertexCount),
+                Arrays.copyOf(indices, indexCount)
+        );
+    }
+
+    private static int columnSurface(Chunk chunk, World world, int worldX, int worldZ) {
+        int size = chunk.getSize();
+        int chunkX = Math.floorDiv(worldX, size);
+        int chunkZ = Math.floorDiv(worldZ, size);
+        Chunk owner = chunkX == chunk.getPos().getX() && chunkZ == chunk.getPos().getZ()
+                ? chunk : world.getLoadedChunk(chunkX, chunkZ);
+        if (owner == null) {
+            return world.getTerrainHeight(worldX, worldZ) + 1;
+        }
+        return owner.getSurfaceHeight(Math.floorMod(worldX, size), Math.floorMod(worldZ, size), false);
+    }
+
+    private static int material(byte type) {
+        switch (type) {
+            case 1:
+                return 0;
+            case 3:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    private static void putVertex(float[] vertices, float[] texCoords, float[] normals, float[] alphas, int vertex,
+                                  float x, float y, float z, float u, float v, float nx, float ny, float nz, float alpha) {
+        vertices[vertex * 3] = x;
+        vertices[vertex * 3 + 1] = y;
+        vertices[vertex * 3 + 2] = z;
+        texCoords[vertex * 2] = u;
+        texCoords[vertex * 2 + 1] = v;
+        normals[vertex * 3] = nx;
+        normals[vertex * 3 + 1] = ny;
+        normals[vertex * 3 + 2] = nz;
+        alphas[vertex] = alpha;
+    }
+
+    private static int putQuad(int[] indices, int offset, int[] quad) {
+        indices[offset] = quad[0];
+        indices[offset + 1] = quad[1];
+        indices[offset + 2] = quad[2];
+        indices[offset + 3] = quad[0];
+        indices[offset + 4] = quad[2];
+        indices[offset + 5] = quad[3];
+        return offset + 6;
+    }
+}
@@ -0,0 +1,190 @@
+package edu.kosa.terrainproject.terrain;
+
+import edu.kosa.terrainproject.noise.graph.NoiseGrid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bakes World heights straight into memory-mapped files without instantiating chunks.
+// Heights are unsigned 16-bit little-endian, row-major by z; the water mask packs one bit per column, LSB first.
+public class HeightmapBaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HeightmapBaker.class);
+    public static final int TILE_SIZE = 256; // Multiple of 8 so tiles never share a water mask byte
+    private final World world;
+    private final ForkJoinPool pool;
+
+    public static final class Report {
+        public final long columns;
+        public final long waterColumns;
+        public final double seconds;
+
+        public Report(long columns, long waterColumns, double seconds) {
+            this.columns = columns;
+            this.waterColumns = waterColumns;
+            this.seconds = seconds;
+        }
+
+        public double columnsPerSecond() {
+            return seconds > 0 ? columns / seconds : 0;
+        }
+    }
+
+    public HeightmapBaker(World world, int parallelism) {
+        this.world = world;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    // Bands of up to TILE_SIZE rows are mapped one at a time, so resident memory stays bounded for any area. A single
+    // mapping holds at most Integer.MAX_VALUE bytes, very wide maps get bands of fewer rows.
+    public Report bake(int originX, int originZ, int width, int depth, Path heightsFile, Path waterMaskFile) throws IOException {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Heightmap size must be positive, got " + width + "x" + depth);
+        }
+        if (width > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Heightmap rows are limited to " + Integer.MAX_VALUE / 2
+                    + " columns so one row of heights fits a mapping, got " + width);
+        }
+        HeightFunction heightFunction = world.getHeightFunction();
+        int maskStride = (width + 7) / 8;
+        int bandRows = (int) Math.min(TILE_SIZE, Integer.MAX_VALUE / (width * 2L));
+        AtomicLong done = new AtomicLong();
+        AtomicLong water = new AtomicLong();
+        long total = (long) width * depth;
+        long start = System.nanoTime();
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heightmap-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long columns = done.get();
+            LOGGER.info("Baked {}/{} columns ({}%), {} columns/s", columns, total,
+                    String.format("%.1f", 100.0 * columns / total), String.format("%.0f", columns / seconds));
+        }, 2, 2, TimeUnit.SECONDS);
+
+        try (FileChannel heights = FileChannel.open(heightsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel mask = FileChannel.open(waterMaskFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int bandZ = 0; bandZ < depth; bandZ += bandRows) {
+                int rows = Math.min(bandRows, depth - bandZ);
+                MappedByteBuffer heightBand = heights.map(FileChannel.MapMode.READ_WRITE, (long) bandZ * width * 2, (long) rows * width * 2);
+                heightBand.order(ByteOrder.LITTLE_ENDIAN);
+                MappedByteBuffer maskBand = mask.map(FileChannel.MapMode.READ_WRITE, (long) bandZ * maskStride, (long) rows * maskStride);
+
+                List<TileTask> tiles = new ArrayList<>();
+                for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                    tiles.add(new TileTask(heightFunction, heightBand, maskBand, originX, originZ + bandZ, tileX,
+                            Math.min(TILE_SIZE, width - tileX), rows, width, maskStride, done, water));
+                }
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tiles);
+                    }
+                });
+                heightBand.force();
+                maskBand.force();
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        Report report = new Report(total, water.get(), (System.nanoTime() - start) / 1e9);
+        LOGGER.info("Baked {}x{} heightmap in {} s ({} columns/s, {} water columns)", width, depth,
+                String.format("%.2f", report.seconds), String.format("%.0f", report.columnsPerSecond()), report.waterColumns);
+        return report;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Writes the heights and water mask of a block of columns in the file layout, at the given byte offsets and row
+    // strides of the two buffers; heights must be little-endian and tileWidth a multiple of 8 unless it ends the row.
+    // Offsets are computed in long, a block reaching past what a buffer can index fails instead of wrapping around.
+    // Returns the number of water columns.
+    public static long bakeTile(HeightFunction heightFunction, int worldX, int worldZ, int tileWidth, int rows,
+                                ByteBuffer heights, int heightOffset, int heightStride,
+                                ByteBuffer mask, int maskOffset, int maskStride) {
+        long waterColumns = 0;
+        int[] rowHeights = new int[tileWidth];
+        for (int row = 0; row < rows; row++) {
+            // One grid row at a time, so the water layer is shared by the height and mask outputs
+            NoiseGrid grid = heightFunction.getGraph().newGrid(worldX, worldZ + row, tileWidth, 1);
+            heightFunction.heights(grid, rowHeights);
+            boolean[] rowWater = heightFunction.waterRegions(grid);
+            int heightRow = Math.toIntExact(heightOffset + (long) row * heightStride);
+            int maskRow = Math.toIntExact(maskOffset + (long) row * maskStride);
+            int bits = 0;
+            for (int i = 0; i < tileWidth; i++) {
+                heights.putShort(heightRow + i * 2, (short) rowHeights[i]);
+                if (rowWater[i]) {
+                    bits |= 1 << (i & 7);
+                    waterColumns++;
+                }
+                if ((i & 7) == 7 || i == tileWidth - 1) {
+                    mask.put(maskRow + i / 8, (byte) bits);
+                    bits = 0;
+                }
+            }
+        }
+        return waterColumns;
+    }
+
+    private static final class TileTask extends RecursiveAction {
+        private final HeightFunction heightFunction;
+        private final MappedByteBuffer heights;
+        private final MappedByteBuffer mask;
+        private final int worldX;
+        private final int worldZ;
+        private final int tileX;
+        private final int tileWidth;
+        private final int rows;
+        private final int width;
+        private final int maskStride;
+        private final AtomicLong done;
+        private final AtomicLong water;
+
+        TileTask(HeightFunction heightFunction, MappedByteBuffer heights, MappedByteBuffer mask, int worldX, int worldZ, int tileX, int tileWidth,
+                 int rows, int width, int maskStride, AtomicLong done, AtomicLong water) {
+            this.heightFunction = heightFunction;
+            this.heights = heights;
+            this.mask = mask;
+            this.worldX = worldX;
+            this.worldZ = worldZ;
+            this.tileX = tileX;
+            this.tileWidth = tileWidth;
+            this.rows = rows;
+            this.width = width;
+            this.maskStride = maskStride;
+            this.done = done;
+            this.water = water;
+        }
+
+        @Override
+        protected void compute() {
+            long waterColumns = bakeTile(heightFunction, worldX + tileX, worldZ, tileWidth, rows,
+                    heights, tileX * 2, width * 2, mask, tileX / 8, maskStride); // Band offsets, below 2^31 by construction
+            water.addAndGet(waterColumns);
+            done.addAndGet((long) rows * tileWidth);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package edu.kosa.terrainproject.terrain;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Droplet-based hydraulic erosion on a square float heightmap (row-major, z * size + x). Each droplet flows
+// downhill with some inertia, picks up sediment where it speeds up and drops it where it slows or the slope flattens.
+final class HydraulicErosion {
+    private static final float INERTIA = 0.05f;
+    private static final float CAPACITY = 4f;
+    private static final float MIN_CAPACITY = 0.01f;
+    private static final float ERODE_RATE = 0.3f;
+    private static final float DEPOSIT_RATE = 0.3f;
+    private static final float EVAPORATION = 0.02f;
+    private static final float GRAVITY = 4f;
+    private static final int MAX_STEPS = 32;
+    private static final int BRUSH_RADIUS = 3;
+    private static final int[] BRUSH_DX;
+    private static final int[] BRUSH_DZ;
+    private static final float[] BRUSH_WEIGHT;
+
+    // Erosion removes material from a disc with weights falling off linearly, digging at one point carves pits
+    static {
+        int side = 2 * BRUSH_RADIUS + 1;
+        int[] dx = new int[side * side];
+        int[] dz = new int[side * side];
+        float[] weight = new float[side * side];
+        int count = 0;
+        float total = 0;
+        for (int z = -BRUSH_RADIUS; z <= BRUSH_RADIUS; z++) {
+            for (int x = -BRUSH_RADIUS; x <= BRUSH_RADIUS; x++) {
+                float w = BRUSH_RADIUS - (float) Math.sqrt(x * x + z * z);
+                if (w > 0) {
+                    dx[count] = x;
+                    dz[count] = z;
+                    weight[count] = w;
+                    total += w;
+                    count++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            weight[i] /= total;
+        }
+        BRUSH_DX = Arrays.copyOf(dx, count);
+        BRUSH_DZ = Arrays.copyOf(dz, count);
+        BRUSH_WEIGHT = Arrays.copyOf(weight, count);
+    }
+
+    private HydraulicErosion() {
+    }
+
+    static void erode(float[] map, int size, long seed, int droplets) {
+        SplittableRandom random = new SplittableRandom(seed);
+        float[] gradient = new float[3]; // dx, dz, interpolated height
+        for (int d = 0; d < droplets; d++) {
+            float x = (float) random.nextDouble(0, size - 1);
+            float z = (float) random.nextDouble(0, size - 1);
+            float dirX = 0;
+            float dirZ = 0;
+            float speed = 1;
+            float water = 1;
+            float sediment = 0;
+
+            for (int step = 0; step < MAX_STEPS; step++) {
+                int cellX = (int) x;
+                int cellZ = (int) z;
+                float offsetX = x - cellX;
+                float offsetZ = z - cellZ;
+                sample(map, size, x, z, gradient);
+                float height = gradient[2];
+
+                dirX = dirX * INERTIA - gradient[0] * (1 - INERTIA);
+                dirZ = dirZ * INERTIA - gradient[1] * (1 - INERTIA);
+                float length = (float) Math.sqrt(dirX * dirX + dirZ * dirZ);
+                if (length == 0) {
+                    break; // Flat ground, the droplet has nowhere to go
+                }
+                dirX /= length;
+                dirZ /= length;
+                x += dirX;
+                z += dirZ;
+                if (x < 0 || x >= size - 1 || z < 0 || z >= size - 1) {
+                    break;
+                }
+
+                sample(map, size, x, z, gradient);
+                float deltaHeight = gradient[2] - height;
+                float capacity = Math.max(-deltaHeight * speed * water * CAPACITY, MIN_CAPACITY);
+                if (sediment > capacity || deltaHeight > 0) {
+                    // Uphill fills the pit it just left at most, otherwise drop part of the surplus
+                    float amount = deltaHeight > 0 ? Math.min(deltaHeight, sediment) : (sediment - capacity) * DEPOSIT_RATE;
+                    sediment -= amount;
+                    spread(map, size, cellX, cellZ, offsetX, offsetZ, amount);
+                } else {
+                    // Never dig deeper than the height drop, that would carve spikes
+                    float amount = Math.min((capacity - sediment) * ERODE_RATE, -deltaHeight);
+                    sediment += erode(map, size, cellX, cellZ, amount);
+                }
+
+                speed = (float) Math.sqrt(Math.max(0, speed * speed - deltaHeight * GRAVITY));
+                water *= 1 - EVAPORATION;
+            }
+        }
+    }
+
+    // Bilinear height and gradient at a point inside the map
+    private static void sample(float[] map, int size, float x, float z, float[] out) {
+        int cellX = (int) x;
+        int cellZ = (int) z;
+        float u = x - cellX;
+        float v = z - cellZ;
+        int i = cellZ * size + cellX;
+        float nw = map[i];
+        float ne = map[i + 1];
+        float sw = map[i + size];
+        float se = map[i + size + 1];
+        out[0] = (ne - nw) * (1 - v) + (se - sw) * v;
+        out[1] = (sw - nw) * (1 - u) + (se - ne) * u;
+        out[2] = nw * (1 - u) * (1 - v) + ne * u * (1 - v) + sw * (1 - u) * v + se * u * v;
+    }
+
+    // Removes up to amount around the cell with the brush weights, returns what was actually taken
+    private static float erode(float[] map, int size, int cellX, int cellZ, float amount) {
+        float taken = 0;
+        for (int i = 0; i < BRUSH_WEIGHT.length; i++) {
+            int x = cellX + BRUSH_DX[i];
+            int z = cellZ + BRUSH_DZ[i];
+            if (x < 0 || x >= size || z < 0 || z >= size) {
+                continue;
+            }
+            int index = z * size + x;
+            float delta = Math.min(map[index], amount * BRUSH_WEIGHT[i]);
+            map[index] -= delta;
+            taken += delta;
+        }
+        return taken;
+    }
+
+    // Adds amount to the four cells around the droplet, weighted by its position in the cell
+    private static void spread(float[] map, int size, int cellX, int cellZ, float u, float v, float amount) {
+        int i = cellZ * size + cellX;
+        map[i] += amount * (1 - u) * (1 - v);
+        map[i + 1] += amount * u * (1 - v);
+        map[i + size] += amount * (1 - u) * v;
+        map[i + size + 1] += amount * u * v;
+    }
+}
@@ -10,6 +10,8 @@ public class TerrainConfig {
     public int sandHeightThreshold = 5; // Max y for sand blocks
     public long seed;// World seed
     public String noiseType = "Standard"; // Standard, Ridged, Billowy, Hybrid
+    public boolean erosion = false; // Hydraulic erosion post-process on region tiles
+    public int chunkSize = Chunk.DEFAULT_SIZE; // Chunk width and depth in blocks, 16, 32 or 64
     public final double regionScale = 0.015; // Low frequency for large regions
     public final double flatThreshold = 0.3; // Noise value below which terrain is flat (0–1)
     public final double flatHeightScale = 1.5; // Reduced height scale for flat areas
@@ -21,4 +23,8 @@ public class TerrainConfig {
     public TerrainConfig(long initialSeed) {
         this.seed = initialSeed;
     }
+
+    public TerrainSnapshot snapshot() {
+        return new TerrainSnapshot(this);
+    }
 }
\ No newline at end of file
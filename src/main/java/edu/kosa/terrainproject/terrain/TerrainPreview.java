@@ -0,0 +1,140 @@
+package edu.kosa.terrainproject.terrain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Top-down map of a configuration for the settings panel, sampled from the height function alone so it is ready long
+// before any chunk is. Every pixel covers BLOCKS_PER_PIXEL columns and is coloured by the column at its corner: lakes
+// blue, the sand biome yellow, everything else green to grey and white by height. The map is built in passes that
+// halve the sample spacing, each published as soon as it is done, and a newer request abandons the one in progress
+// at the next row. Erosion and lake levels need neighbouring chunks and are not shown.
+// request() and getImage() may be called from any thread, the sampling runs on a thread of its own.
+public class TerrainPreview {
+    public static final int SIZE = 192; // Pixels per side
+    public static final int BLOCKS_PER_PIXEL = 8;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TerrainPreview.class);
+    private static final int FIRST_STEP = 16; // Pixel spacing of the first pass, a power of two
+    private final ExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Image> image = new AtomicReference<>();
+
+    public static final class Image {
+        public final byte[] rgba; // SIZE * SIZE pixels, row-major by z
+        public final int centerX;
+        public final int centerZ;
+        public final int step; // Sample spacing in pixels, 1 once the map is complete
+
+        Image(byte[] rgba, int centerX, int centerZ, int step) {
+            this.rgba = rgba;
+            this.centerX = centerX;
+            this.centerZ = centerZ;
+            this.step = step;
+        }
+
+        public boolean isComplete() {
+            return step == 1;
+        }
+    }
+
+    public TerrainPreview() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "terrain-preview");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY); // Chunk generation comes first
+            return thread;
+        });
+    }
+
+    // Starts a map of config centred on the given column, replacing any map still in progress
+    public void request(TerrainSnapshot config, int centerX, int centerZ) {
+        long current = generation.incrementAndGet();
+        executor.execute(() -> build(config, centerX, centerZ, current));
+    }
+
+    // Latest published pass, null before the first one
+    public Image getImage() {
+        return image.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void build(TerrainSnapshot config, int centerX, int centerZ, long current) {
+        if (generation.get() != current) {
+            return;
+        }
+        long start = System.nanoTime();
+        HeightFunction heightFunction = HeightFunction.compile(config);
+        int originX = centerX - SIZE * BLOCKS_PER_PIXEL / 2;
+        int originZ = centerZ - SIZE * BLOCKS_PER_PIXEL / 2;
+        byte[] rgba = new byte[SIZE * SIZE * 4];
+        for (int step = FIRST_STEP; step >= 1; step /= 2) {
+            for (int pz = 0; pz < SIZE; pz += step) {
+                if (generation.get() != current) {
+                    return; // Parameters changed again, this map is stale
+                }
+                for (int px = 0; px < SIZE; px += step) {
+                    int color;
+                    if (step < FIRST_STEP && px % (step * 2) == 0 && pz % (step * 2) == 0) {
+                        color = getPixel(rgba, px, pz); // Sampled by an earlier pass
+                    } else {
+                        color = sample(heightFunction, config, originX + px * BLOCKS_PER_PIXEL, originZ + pz * BLOCKS_PER_PIXEL);
+                    }
+                    fill(rgba, px, pz, step, color);
+                }
+            }
+            image.set(new Image(rgba.clone(), centerX, centerZ, step));
+        }
+        LOGGER.debug("Preview of {} took {} ms", config, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Same classification as chunk generation, without the lake level
+    private static int sample(HeightFunction heightFunction, TerrainSnapshot config, int worldX, int worldZ) {
+        if (heightFunction.isWaterRegion(worldX, worldZ)) {
+            return 0x3060C0;
+        }
+        int height = heightFunction.height(worldX, worldZ);
+        double blendFactor = heightFunction.blendFactor(worldX, worldZ, false);
+        if (blendFactor < 1 && height <= config.sandHeightThreshold + config.biomeBlendRange) {
+            height = (int) (config.sandHeightThreshold + (height - config.sandHeightThreshold) * Math.max(0, blendFactor));
+        }
+        if (height <= config.sandHeightThreshold) {
+            return 0xD8C878;
+        }
+        float t = Math.min(1f, (float) (height - config.sandHeightThreshold) / Math.max(1, config.maxHeight / 2));
+        if (t < 0.5f) {
+            return mix(0x4C9A2A, 0x2E5E1A, t * 2); // Lowland to forest green
+        }
+        return mix(0x6E6A60, 0xF0F0F0, (t - 0.5f) * 2); // Rock to snow
+    }
+
+    private static int mix(int from, int to, float t) {
+        int r = (int) (((from >> 16) & 0xFF) + (((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * t);
+        int g = (int) (((from >> 8) & 0xFF) + (((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * t);
+        int b = (int) ((from & 0xFF) + ((to & 0xFF) - (from & 0xFF)) * t);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int getPixel(byte[] rgba, int px, int pz) {
+        int i = (pz * SIZE + px) * 4;
+        return ((rgba[i] & 0xFF) << 16) | ((rgba[i + 1] & 0xFF) << 8) | (rgba[i + 2] & 0xFF);
+    }
+
+    private static void fill(byte[] rgba, int px, int pz, int step, int color) {
+        for (int z = pz; z < Math.min(SIZE, pz + step); z++) {
+            for (int x = px; x < Math.min(SIZE, px + step); x++) {
+                int i = (z * SIZE + x) * 4;
+                rgba[i] = (byte) (color >> 16);
+                rgba[i + 1] = (byte) (color >> 8);
+                rgba[i + 2] = (byte) color;
+                rgba[i + 3] = (byte) 0xFF;
+            }
+        }
+    }
+}
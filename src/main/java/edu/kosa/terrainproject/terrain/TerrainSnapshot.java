@@ -0,0 +1,84 @@
+package edu.kosa.terrainproject.terrain;
+
+import java.util.Objects;
+
+// Immutable copy of a TerrainConfig, safe to use as a cache key while the UI keeps editing the original
+public final class TerrainSnapshot {
+    public final float scale;
+    public final int octaves;
+    public final float persistence;
+    public final float lacunarity;
+    public final float heightScale;
+    public final float baseHeight;
+    public final int sandHeightThreshold;
+    public final long seed;
+    public final String noiseType;
+    public final boolean erosion;
+    public final int chunkSize;
+    public final double regionScale;
+    public final double flatThreshold;
+    public final double flatHeightScale;
+    public final double mountainAmplifier;
+    public final double transitionRange;
+    public final int maxHeight;
+    public final double biomeBlendRange;
+
+    TerrainSnapshot(TerrainConfig config) {
+        this.scale = config.scale;
+        this.octaves = config.octaves;
+        this.persistence = config.persistence;
+        this.lacunarity = config.lacunarity;
+        this.heightScale = config.heightScale;
+        this.baseHeight = config.baseHeight;
+        this.sandHeightThreshold = config.sandHeightThreshold;
+        this.seed = config.seed;
+        this.noiseType = config.noiseType;
+        this.erosion = config.erosion;
+        this.chunkSize = config.chunkSize;
+        this.regionScale = config.regionScale;
+        this.flatThreshold = config.flatThreshold;
+        this.flatHeightScale = config.flatHeightScale;
+        this.mountainAmplifier = config.mountainAmplifier;
+        this.transitionRange = config.transitionRange;
+        this.maxHeight = config.maxHeight;
+        this.biomeBlendRange = config.biomeBlendRange;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TerrainSnapshot that = (TerrainSnapshot) o;
+        return Float.compare(scale, that.scale) == 0
+                && octaves == that.octaves
+                && Float.compare(persistence, that.persistence) == 0
+                && Float.compare(lacunarity, that.lacunarity) == 0
+                && Float.compare(heightScale, that.heightScale) == 0
+                && Float.compare(baseHeight, that.baseHeight) == 0
+                && sandHeightThreshold == that.sandHeightThreshold
+                && seed == that.seed
+                && noiseType.equals(that.noiseType)
+                && erosion == that.erosion
+                && chunkSize == that.chunkSize
+                && Double.compare(regionScale, that.regionScale) == 0
+                && Double.compare(flatThreshold, that.flatThreshold) == 0
+                && Double.compare(flatHeightScale, that.flatHeightScale) == 0
+                && Double.compare(mountainAmplifier, that.mountainAmplifier) == 0
+                && Double.compare(transitionRange, that.transitionRange) == 0
+                && maxHeight == that.maxHeight
+                && Double.compare(biomeBlendRange, that.biomeBlendRange) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scale, octaves, persistence, lacunarity, heightScale, baseHeight, sandHeightThreshold,
+                seed, noiseType, erosion, chunkSize, regionScale, flatThreshold, flatHeightScale, mountainAmplifier, transitionRange,
+                maxHeight, biomeBlendRange);
+    }
+
+    @Override
+    public String toString() {
+        return noiseType + " seed=" + seed + " scale=" + scale + " octaves=" + octaves + " chunkSize=" + chunkSize
+                + (erosion ? " eroded" : "");
+    }
+}
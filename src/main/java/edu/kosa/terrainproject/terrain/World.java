@@ -1,100 +1,340 @@
 package edu.kosa.terrainproject.terrain;
 
-import edu.kosa.terrainproject.noise.FbmGenerator;
-import edu.kosa.terrainproject.noise.NoiseConfig;
-import edu.kosa.terrainproject.noise.NoiseVariant;
-import edu.kosa.terrainproject.noise.PerlinNoiseGenerator;
+import edu.kosa.terrainproject.diagnostics.ChunkGenerationEvent;
+import edu.kosa.terrainproject.util.ConcurrentLongIntMap;
+import edu.kosa.terrainproject.util.ConcurrentLongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public class World {
-    private final Map<ChunkPos, Chunk> chunks;
-    private FbmGenerator terrainFbm;
-    private FbmGenerator regionFbm;
-    private TerrainConfig config;
-    private final Map<ChunkPos, Integer> waterSurfaceHeights;
+    private static final Logger LOGGER = LoggerFactory.getLogger(World.class);
+    private static final long CACHE_BUDGET_BYTES = 256L << 20; // Shared by all cached configurations
+    private ConcurrentLongObjectMap<Chunk> chunks; // Keyed by ChunkPos.pack
+    private volatile HeightFunction heightFunction;
+    private volatile ErosionStage erosion; // null unless the snapshot enables erosion
+    private TerrainSnapshot config;
+    private ConcurrentLongIntMap waterSurfaceHeights;
+    private final ChunkCache cache;
+    private final ChunkSource source; // null generates chunks in this process
+    private ConcurrentLongObjectMap<CompletableFuture<Chunk>> loading = new ConcurrentLongObjectMap<>(); // Requests to the source
+    private ConcurrentLongObjectMap<CompletableFuture<Chunk>> generating = new ConcurrentLongObjectMap<>(); // Local chunks being built
+    private final ConcurrentLongObjectMap<Chunk> dirtyChunks = new ConcurrentLongObjectMap<>(); // Waiting for a remesh
+    private final AtomicInteger createdChunks = new AtomicInteger(); // Generated here or received from the source
 
     public World(TerrainConfig config) {
-        this.chunks = new HashMap<>();
-        this.waterSurfaceHeights = new HashMap<>();
-        this.config = config;
-        this.terrainFbm = new FbmGenerator(new PerlinNoiseGenerator(config.seed, config.scale));
-        this.regionFbm = new FbmGenerator(new PerlinNoiseGenerator(config.seed + 2, config.regionScale));
+        this(config, Chunk::cleanup);
     }
 
+    // releaser frees the meshes of chunks evicted from the configuration cache, the renderer defers it to the GL thread
+    public World(TerrainConfig config, Consumer<Chunk> releaser) {
+        this(config, releaser, null);
+    }
+
+    public World(TerrainConfig config, Consumer<Chunk> releaser, ChunkSource source) {
+        this.source = source;
+        this.cache = new ChunkCache(CACHE_BUDGET_BYTES, releaser);
+        this.chunks = new ConcurrentLongObjectMap<>();
+        this.waterSurfaceHeights = new ConcurrentLongIntMap();
+        this.config = checkChunkSize(config.snapshot());
+        this.heightFunction = HeightFunction.compile(this.config);
+        this.erosion = this.config.erosion ? new ErosionStage(heightFunction) : null;
+    }
+
+    // Parks the current chunks in the cache and restores the ones of newConfig if they were generated before
     public void regenerate(TerrainConfig newConfig) {
-        chunks.clear();
-        waterSurfaceHeights.clear();
-        this.config = newConfig;
-        this.terrainFbm = new FbmGenerator(new PerlinNoiseGenerator(newConfig.seed, newConfig.scale));
-        this.regionFbm = new FbmGenerator(new PerlinNoiseGenerator(newConfig.seed + 2, newConfig.regionScale));
+        regenerate(newConfig.snapshot());
+    }
+
+    public void regenerate(TerrainSnapshot snapshot) {
+        if (snapshot.equals(config)) {
+            return;
+        }
+        checkChunkSize(snapshot);
+        loading = new ConcurrentLongObjectMap<>(); // Late responses still land in the generation that asked for them
+        generating = new ConcurrentLongObjectMap<>();
+        dirtyChunks.clear(); // Pending edits stay flagged on their chunks and are queued again on restore
+        cache.store(config, new ChunkCache.Generation(chunks, waterSurfaceHeights));
+        ChunkCache.Generation cached = cache.take(snapshot);
+        if (cached != null) {
+            LOGGER.info("Restored {} cached chunks for {}", cached.chunks.size(), snapshot);
+            this.chunks = cached.chunks;
+            this.waterSurfaceHeights = cached.waterSurfaceHeights;
+            chunks.forEach((key, chunk) -> {
+                if (chunk.isDirty()) {
+                    dirtyChunks.put(key, chunk);
+                }
+            });
+        } else {
+            this.chunks = new ConcurrentLongObjectMap<>();
+            this.waterSurfaceHeights = new ConcurrentLongIntMap();
+        }
+        this.config = snapshot;
+        this.heightFunction = HeightFunction.compile(snapshot);
+        this.erosion = snapshot.erosion ? new ErosionStage(heightFunction) : null;
+    }
+
+    private static TerrainSnapshot checkChunkSize(TerrainSnapshot snapshot) {
+        if (snapshot.chunkSize < 8 || snapshot.chunkSize > Chunk.MAX_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 8 and " + Chunk.MAX_SIZE + ", got " + snapshot.chunkSize);
+        }
+        return snapshot;
+    }
+
+    // Width and depth of the chunks of the current configuration, in blocks
+    public int getChunkSize() {
+        return config.chunkSize;
+    }
+
+    public TerrainSnapshot getConfig() {
+        return config;
+    }
+
+    // Releases every cached mesh, must run on the GL thread
+    public void cleanup() {
+        cache.clear();
+        chunks.forEach((key, chunk) -> chunk.cleanup());
     }
 
+    // Closes the chunk source, if any
+    public void close() {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    // Chunks generated or received since the world was created, restores from the cache are not counted
+    public int getCreatedChunkCount() {
+        return createdChunks.get();
+    }
+
+    public boolean isRemote() {
+        return source != null;
+    }
+
+    // Blocks until a remote chunk arrives, callers that must not wait use requestChunk()
     public Chunk getChunk(int chunkX, int chunkZ) {
-        ChunkPos pos = new ChunkPos(chunkX, chunkZ);
-        return chunks.computeIfAbsent(pos, p -> new Chunk(p, new PerlinNoiseGenerator(config.seed, config.scale), config, this));
+        return getChunk(chunkX, chunkZ, 0);
     }
 
-    public byte getBlock(int x, int y, int z) {
-        int chunkX = Math.floorDiv(x, Chunk.SIZE);
-        int chunkZ = Math.floorDiv(z, Chunk.SIZE);
-        int localX = Math.floorMod(x, Chunk.SIZE);
-        int localZ = Math.floorMod(z, Chunk.SIZE);
+    // A missing chunk is generated at the given detail level, a loaded one is returned as it is, see refineChunk().
+    // Remote and eroded chunks always have full detail.
+    public Chunk getChunk(int chunkX, int chunkZ, int detailLevel) {
+        Chunk chunk = chunks.get(ChunkPos.pack(chunkX, chunkZ));
+        if (chunk != null) {
+            return chunk;
+        }
+        if (source != null) {
+            return requestChunk(chunkX, chunkZ).join();
+        }
+        // One slot per chunk being built, so a thread asking for it meanwhile waits instead of building it again
+        long key = ChunkPos.pack(chunkX, chunkZ);
+        ConcurrentLongObjectMap<Chunk> target = chunks;
+        ConcurrentLongObjectMap<CompletableFuture<Chunk>> slots = generating;
+        CompletableFuture<Chunk> created = new CompletableFuture<>();
+        CompletableFuture<Chunk> slot = slots.computeIfAbsent(key, k -> created);
+        if (slot != created) {
+            return slot.join();
+        }
+        try {
+            chunk = target.get(key); // Stored by a slot that finished after the first lookup
+            if (chunk == null) {
+                ErosionStage erosion = this.erosion;
+                ChunkGenerationEvent event = new ChunkGenerationEvent();
+                event.begin();
+                chunk = new Chunk(new ChunkPos(chunkX, chunkZ), heightFunction, erosion, this, erosion != null ? 0 : detailLevel);
+                commit(event, chunk, false);
+                target.put(key, chunk);
+                createdChunks.incrementAndGet();
+            }
+            created.complete(chunk);
+            return chunk;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            slots.remove(key); // Only after the chunk is stored, a later lookup finds it there
+        }
+    }
+
+    // Local chunks are generated right away, remote ones complete when the source delivers them
+    public CompletableFuture<Chunk> requestChunk(int chunkX, int chunkZ) {
+        return requestChunk(chunkX, chunkZ, 0);
+    }
+
+    public CompletableFuture<Chunk> requestChunk(int chunkX, int chunkZ, int detailLevel) {
+        long key = ChunkPos.pack(chunkX, chunkZ);
+        Chunk chunk = chunks.get(key);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+        if (source == null) {
+            return CompletableFuture.completedFuture(getChunk(chunkX, chunkZ, detailLevel));
+        }
+        ConcurrentLongObjectMap<Chunk> target = chunks;
+        ConcurrentLongObjectMap<CompletableFuture<Chunk>> requests = loading;
+        CompletableFuture<Chunk> request = requests.get(key);
+        if (request != null) {
+            return request;
+        }
+        CompletableFuture<Chunk> created = new CompletableFuture<>();
+        request = requests.computeIfAbsent(key, k -> created);
+        if (request == created) {
+            // Only the thread that won the slot sends the request
+            source.load(new ChunkPos(chunkX, chunkZ), config).whenComplete((loaded, error) -> {
+                if (error != null) {
+                    requests.remove(key); // The next request retries
+                    created.completeExceptionally(error);
+                } else {
+                    Chunk stored = target.computeIfAbsent(key, k -> loaded);
+                    if (stored == loaded) {
+                        createdChunks.incrementAndGet();
+                    }
+                    requests.remove(key);
+                    created.complete(stored);
+                }
+            });
+        }
+        return request;
+    }
+
+    public Chunk getLoadedChunk(int chunkX, int chunkZ) {
+        return chunks.get(ChunkPos.pack(chunkX, chunkZ));
+    }
+
+    // Edits the block and queues the owning chunk, plus the neighbor sharing a changed edge, for remeshing
+    public boolean setBlock(int x, int y, int z, byte type) {
+        int size = config.chunkSize;
+        int chunkX = Math.floorDiv(x, size);
+        int chunkZ = Math.floorDiv(z, size);
+        int localX = Math.floorMod(x, size);
+        int localZ = Math.floorMod(z, size);
         Chunk chunk = getChunk(chunkX, chunkZ);
-        return chunk.getBlock(localX, y, localZ);
+        refineChunk(chunk, 0); // A later refinement would regenerate the blocks and lose the edit
+        if (!chunk.setBlock(localX, y, localZ, type)) {
+            return false;
+        }
+        dirtyChunks.put(ChunkPos.pack(chunkX, chunkZ), chunk);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (dx != 0 || dz != 0) {
+                    markNeighborDirty(chunkX + dx, chunkZ + dz, dx, dz, localX, localZ);
+                }
+            }
+        }
+        return true;
     }
 
-    private double lerp(double a, double b, double t) {
-        return a + (b - a) * Math.max(0, Math.min(1, t));
+    // Generates a chunk coarser than detailLevel again at that level and queues it for remeshing, along with all
+    // its neighbours since the blocks on every shared edge may have moved. Only the update thread may call this, it is
+    // the one reading blocks to build meshes.
+    public void refineChunk(Chunk chunk, int detailLevel) {
+        if (chunk.getDetailLevel() <= detailLevel) {
+            return;
+        }
+        ChunkGenerationEvent event = new ChunkGenerationEvent();
+        event.begin();
+        chunk.refine(heightFunction, this, detailLevel);
+        commit(event, chunk, true);
+        ChunkPos pos = chunk.getPos();
+        dirtyChunks.put(pos.toLong(), chunk);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                Chunk neighbor = getLoadedChunk(pos.getX() + dx, pos.getZ() + dz);
+                if ((dx != 0 || dz != 0) && neighbor != null) {
+                    neighbor.markDirty();
+                    dirtyChunks.put(neighbor.getPos().toLong(), neighbor);
+                }
+            }
+        }
     }
 
-    private double grassSmoothstep(double t) {
-        t = Math.max(0, Math.min(1, t));
-        double smooth = t * t * (3 - 2 * t);
-        return smooth * smooth;
+    // Fields are only filled in while a recording wants the event, so generation pays nothing extra otherwise
+    private void commit(ChunkGenerationEvent event, Chunk chunk, boolean refinement) {
+        if (event.shouldCommit()) {
+            event.chunkX = chunk.getPos().getX();
+            event.chunkZ = chunk.getPos().getZ();
+            event.noiseType = config.noiseType;
+            event.detailLevel = chunk.getDetailLevel();
+            event.refinement = refinement;
+            event.commit();
+        }
     }
 
-    public int getTerrainHeight(int worldX, int worldZ) {
-        NoiseConfig noiseConfig = new NoiseConfig(config.seed, config.scale, config.octaves, config.persistence, config.lacunarity);
-        NoiseVariant noiseVariant = NoiseVariant.valueOf(config.noiseType.toUpperCase());
-        double noiseValue = terrainFbm.generate(worldX, worldZ, noiseConfig, noiseVariant);
-        noiseValue = (noiseValue + 1) / 2; // Normalize to [0, 1]
-
-        // Region-based height modification for grass biome
-        NoiseConfig regionConfig = new NoiseConfig(config.seed + 2, config.regionScale, 3, 0.5, 2.0);
-        double regionValue = regionFbm.generate(worldX, worldZ, regionConfig, NoiseVariant.STANDARD);
-        double effectiveHeightScale = config.heightScale;
-
-        // Only modify height for grass biome (above sandHeightThreshold + biomeBlendRange and not water)
-        int baseHeight = (int) Math.floor(noiseValue * config.heightScale + config.baseHeight);
-        boolean isWater = regionFbm.generate(worldX, worldZ, NoiseConfig.forWater(config.seed + 1), NoiseVariant.STANDARD) > 0.6;
-        if (!isWater && baseHeight > config.sandHeightThreshold + config.biomeBlendRange) {
-            // Smooth transition between flat and mountainous areas lol
-            double transitionStart = config.flatThreshold - config.transitionRange / 2;
-            double transitionEnd = config.flatThreshold + config.transitionRange / 2;
-            if (regionValue < transitionStart) {
-                effectiveHeightScale = config.flatHeightScale;
-            } else if (regionValue > transitionEnd) {
-                effectiveHeightScale = config.heightScale * config.mountainAmplifier;
-            } else {
-                // Custom grassSmoothstep for ultra-smooth grass-to-grass transitions
-                double t = (regionValue - transitionStart) / config.transitionRange;
-                t = grassSmoothstep(t);
-                effectiveHeightScale = lerp(config.flatHeightScale, config.heightScale * config.mountainAmplifier, t);
+    // Coarsest detail level whose heights stay within maxError blocks of full detail, 0 where chunks cannot be coarse
+    public int getDetailLevel(int maxError) {
+        return source != null || erosion != null ? 0 : heightFunction.detailLevelFor(maxError);
+    }
+
+    // Voxel faces only see the edge column of a neighbour, heightfield corners and normals reach two columns
+    // into every neighbour including the diagonal ones
+    private void markNeighborDirty(int chunkX, int chunkZ, int dx, int dz, int localX, int localZ) {
+        Chunk neighbor = getLoadedChunk(chunkX, chunkZ);
+        if (neighbor == null) {
+            return;
+        }
+        int size = neighbor.getSize();
+        int reach = neighbor.getMeshMode() == Chunk.MeshMode.HEIGHTFIELD ? 1 : dx != 0 && dz != 0 ? -1 : 0;
+        int distanceX = dx < 0 ? localX : dx > 0 ? size - 1 - localX : 0;
+        int distanceZ = dz < 0 ? localZ : dz > 0 ? size - 1 - localZ : 0;
+        if (distanceX <= reach && distanceZ <= reach) {
+            neighbor.markDirty();
+            dirtyChunks.put(ChunkPos.pack(chunkX, chunkZ), neighbor);
+        }
+    }
+
+    // Called once per frame, so any number of edits to a chunk between calls costs a single remesh. The chunks are
+    // picked under the segment locks and meshed after leaving them, other lookups never wait for a mesh build.
+    public int remeshDirtyChunks(int maxChunks) {
+        List<Chunk> picked = new ArrayList<>();
+        dirtyChunks.forEach((key, chunk) -> {
+            if (picked.size() < maxChunks) {
+                picked.add(chunk);
             }
+        });
+        for (Chunk chunk : picked) {
+            // Dequeued first, an edit landing during the remesh queues the chunk again for the next call
+            dirtyChunks.remove(chunk.getPos().toLong());
+            chunk.remesh(this);
         }
+        return picked.size();
+    }
+
+    public byte getBlock(int x, int y, int z) {
+        int size = config.chunkSize;
+        int chunkX = Math.floorDiv(x, size);
+        int chunkZ = Math.floorDiv(z, size);
+        int localX = Math.floorMod(x, size);
+        int localZ = Math.floorMod(z, size);
+        Chunk chunk = getChunk(chunkX, chunkZ);
+        return chunk.getBlock(localX, y, localZ);
+    }
+
+    public HeightFunction getHeightFunction() {
+        return heightFunction;
+    }
+
+    public int getTerrainHeight(int worldX, int worldZ) {
+        ErosionStage erosion = this.erosion;
+        return erosion != null ? erosion.height(worldX, worldZ) : heightFunction.height(worldX, worldZ);
+    }
 
-        int height = (int) Math.floor(noiseValue * effectiveHeightScale + config.baseHeight);
-        return Math.max(0, Math.min(config.maxHeight - 1, height));
+    // Columns that chunk generation turns into lakes
+    public boolean isWaterRegion(int worldX, int worldZ) {
+        return heightFunction.isWaterRegion(worldX, worldZ);
     }
 
-    public int getWaterSurfaceHeight(ChunkPos pos) {
-        return waterSurfaceHeights.getOrDefault(pos, config.sandHeightThreshold);
+    public int getWaterSurfaceHeight(int chunkX, int chunkZ) {
+        return waterSurfaceHeights.getOrDefault(ChunkPos.pack(chunkX, chunkZ), config.sandHeightThreshold);
     }
 
 
     public void setWaterSurfaceHeight(ChunkPos pos, int height) {
-        waterSurfaceHeights.put(pos, height);
+        waterSurfaceHeights.put(pos.toLong(), height);
     }
 }
\ No newline at end of file
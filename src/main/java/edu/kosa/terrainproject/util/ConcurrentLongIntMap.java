@@ -0,0 +1,64 @@
+package edu.kosa.terrainproject.util;
+
+// Lock-striped LongIntMap for tables shared between generation threads
+public class ConcurrentLongIntMap {
+    private static final int SEGMENT_BITS = 4;
+    private final LongIntMap[] segments;
+
+    public ConcurrentLongIntMap() {
+        segments = new LongIntMap[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new LongIntMap();
+        }
+    }
+
+    private LongIntMap segmentFor(long key) {
+        return segments[LongHash.mix(key) >>> (32 - SEGMENT_BITS)];
+    }
+
+    public int getOrDefault(long key, int defaultValue) {
+        LongIntMap segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.getOrDefault(key, defaultValue);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        LongIntMap segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
+        }
+    }
+
+    public void put(long key, int value) {
+        LongIntMap segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public boolean remove(long key) {
+        LongIntMap segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongIntMap segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (LongIntMap segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+}
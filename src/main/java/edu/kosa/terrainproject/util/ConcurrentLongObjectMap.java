@@ -0,0 +1,109 @@
+package edu.kosa.terrainproject.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+// Lock-striped LongObjectMap, each segment is guarded by its own monitor
+public class ConcurrentLongObjectMap<V> {
+    private static final int SEGMENT_BITS = 4;
+    private final LongObjectMap<V>[] segments;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentLongObjectMap() {
+        segments = new LongObjectMap[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new LongObjectMap<>();
+        }
+    }
+
+    private LongObjectMap<V> segmentFor(long key) {
+        // High hash bits pick the segment, the segment table itself probes with the low bits
+        return segments[LongHash.mix(key) >>> (32 - SEGMENT_BITS)];
+    }
+
+    public V get(long key) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    public V put(long key, V value) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.put(key, value);
+        }
+    }
+
+    public V putIfAbsent(long key, V value) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.putIfAbsent(key, value);
+        }
+    }
+
+    // The factory runs outside the lock, so racing callers may both build a value; the first one stored wins
+    public V computeIfAbsent(long key, LongFunction<? extends V> factory) {
+        V existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        V created = factory.apply(key);
+        V raced = putIfAbsent(key, created);
+        return raced != null ? raced : created;
+    }
+
+    public V remove(long key) {
+        LongObjectMap<V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.remove(key);
+        }
+    }
+
+    public void forEach(LongObjectMap.EntryConsumer<? super V> consumer) {
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                segment.forEach(consumer);
+            }
+        }
+    }
+
+    public int removeIf(LongObjectMap.EntryPredicate<? super V> predicate) {
+        int removed = 0;
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                removed += segment.removeIf(predicate);
+            }
+        }
+        return removed;
+    }
+
+    public List<V> values() {
+        List<V> result = new ArrayList<>();
+        forEach((key, value) -> result.add(value));
+        return result;
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (LongObjectMap<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+}
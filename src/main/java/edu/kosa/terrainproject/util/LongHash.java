@@ -0,0 +1,21 @@
+package edu.kosa.terrainproject.util;
+
+public final class LongHash {
+    private LongHash() {
+    }
+
+    // MurmurHash3 finalizer, spreads packed grid coordinates over all bits
+    public static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    static int tableSize(int expectedSize, float loadFactor) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 2) / loadFactor);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}